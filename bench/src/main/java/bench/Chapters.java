@@ -0,0 +1,69 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Book examples live in the default package, which can't be imported from a named package,
+ * while JMH requires benchmarks to be in a named package. This class finds the examples by name.
+ * Method handles kept in static final fields are inlined by the JIT, so calls through them cost
+ * the same as direct calls.
+ */
+final class Chapters {
+    private Chapters() {
+    }
+
+    static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Example class not found: " + className, e);
+        }
+    }
+
+    /**
+     * A handle to an instance method, adapted so it takes the receiver as an Object.
+     */
+    static MethodHandle method(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            var type = type(className);
+            var handle = lookup(type).findVirtual(type, name, MethodType.methodType(returnType, parameterTypes));
+            return handle.asType(handle.type().changeParameterType(0, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Example method not found: " + className + "." + name, e);
+        }
+    }
+
+    static MethodHandle staticMethod(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            var type = type(className);
+            return lookup(type).findStatic(type, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Example method not found: " + className + "." + name, e);
+        }
+    }
+
+    static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+        try {
+            var type = type(className);
+            var handle = lookup(type).findConstructor(type, MethodType.methodType(void.class, parameterTypes));
+            return handle.asType(handle.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Example constructor not found: " + className, e);
+        }
+    }
+
+    static Object staticField(String className, String name) {
+        try {
+            var type = type(className);
+            return lookup(type).findStaticVarHandle(type, name, type.getDeclaredField(name).getType()).get();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Example field not found: " + className + "." + name, e);
+        }
+    }
+
+    private static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+}
@@ -0,0 +1,122 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Check-in strategies from ch10_CheckInsImperative (as registered in ch10_CheckInsLoadDriver)
+ * storing check-ins of cities with Zipf-distributed popularity, using 1, 2, 4 and all available threads.
+ * <p>
+ * Run with the gc profiler to see allocation rates as well:
+ * sbt "bench/Jmh/run -prof gc bench.CheckInsBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckInsBenchmark {
+    private static final MethodHandle STORE_CHECK_IN =
+            Chapters.method("CheckInsStore", "storeCheckIn", void.class, String.class);
+    private static final MethodHandle AWAIT_STORED =
+            Chapters.method("CheckInsStore", "awaitStored", void.class);
+    private static final MethodHandle CLOSE =
+            Chapters.method("CheckInsStore", "close", void.class);
+    private static final MethodHandle NEW_ZIPF_DISTRIBUTION =
+            Chapters.constructor("ZipfDistribution", int.class, double.class);
+    private static final MethodHandle SAMPLE =
+            Chapters.method("ZipfDistribution", "sample", String.class, Random.class);
+
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({
+            "monitors",
+            "actors",
+            "batched actors",
+            "actors with city ids",
+            "sharded actors",
+            "batched sharded actors",
+            "actors with log",
+            "thread-safe data structures",
+            "thread-safe data structures with log",
+            "atomic reference imperative",
+            "atomic reference functional",
+            "striped counters",
+            "city ids",
+            "last 5 minutes"
+    })
+    public String strategy;
+
+    @Param({"10", "10000", "1000000"})
+    public int cities;
+
+    @Param({"0.0", "1.0", "1.5"})
+    public double skew;
+
+    private Object store;
+    private String[] checkIns;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Throwable {
+        var strategies = (Map<String, Supplier<?>>) Chapters.staticField("ch10_CheckInsLoadDriver", "STRATEGIES");
+        store = strategies.get(strategy).get();
+
+        // city names are sampled upfront, so that we don't measure the random number generator
+        var distribution = NEW_ZIPF_DISTRIBUTION.invoke(cities, skew);
+        var random = new Random(42);
+        checkIns = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            checkIns[i] = (String) SAMPLE.invoke(distribution, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        CLOSE.invokeExact(store);
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int next = ThreadLocalRandom.current().nextInt(SAMPLES); // each thread starts at a different place
+        int stored = 0;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneThread(Producer producer) throws Throwable {
+        storeCheckIn(producer);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoThreads(Producer producer) throws Throwable {
+        storeCheckIn(producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourThreads(Producer producer) throws Throwable {
+        storeCheckIn(producer);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void allThreads(Producer producer) throws Throwable {
+        storeCheckIn(producer);
+    }
+
+    private void storeCheckIn(Producer producer) throws Throwable {
+        STORE_CHECK_IN.invokeExact(store, checkIns[producer.next]);
+        producer.next = (producer.next + 1) & (SAMPLES - 1);
+        // asynchronous stores (actors) would otherwise only measure how fast messages are queued in the mailbox
+        if ((++producer.stored & 1023) == 0) AWAIT_STORED.invokeExact(store);
+    }
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchanges between random pairs of currencies using CrossRates from ch09_CurrencyExchangeCrossRates:
+ * without refreshes, and while another thread refreshes all rates again and again.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrossRatesBenchmark {
+    private static final MethodHandle CURRENCIES =
+            Chapters.staticMethod("ch09_CurrencyExchangeCrossRates", "currencies", List.class, int.class);
+    private static final MethodHandle SIMULATED_BASE_TABLES = Chapters.staticMethod(
+            "ch09_CurrencyExchangeCrossRates", "simulatedBaseTables", Map.class, List.class, Random.class);
+    private static final MethodHandle NEW_CROSS_RATES =
+            Chapters.constructor("CrossRates", List.class, int.class);
+    private static final MethodHandle REFRESH =
+            Chapters.method("CrossRates", "refresh", void.class, Map.class);
+    private static final MethodHandle CURRENT = Chapters.method("CrossRates", "current", Chapters.type("RateTable"))
+            .asType(MethodType.methodType(Object.class, Object.class));
+    private static final MethodHandle EXCHANGE = Chapters.method("RateTable", "exchange",
+            long.class, long.class, int.class, int.class, int.class, int.class, RoundingMode.class);
+
+    private static final int SAMPLES = 1 << 12;
+
+    @Param({"10", "160"})
+    public int currencies;
+
+    private Object crossRates;
+    private List<Map<String, Map<String, BigDecimal>>> baseTables;
+    private int[] from;
+    private int[] to;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Throwable {
+        var names = (List<String>) CURRENCIES.invokeExact(currencies);
+        var random = new Random(42);
+        baseTables = List.of(
+                (Map<String, Map<String, BigDecimal>>) SIMULATED_BASE_TABLES.invokeExact(names, random),
+                (Map<String, Map<String, BigDecimal>>) SIMULATED_BASE_TABLES.invokeExact(names, random)
+        );
+        crossRates = NEW_CROSS_RATES.invoke(names, 9);
+        REFRESH.invokeExact(crossRates, (Map<?, ?>) baseTables.get(0));
+
+        from = new int[SAMPLES];
+        to = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            from[i] = random.nextInt(currencies);
+            to[i] = random.nextInt(currencies);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        int next = 0;
+        int refreshes = 0;
+    }
+
+    @Benchmark
+    @Group("withoutRefreshes")
+    public long lookup(Reader reader) throws Throwable {
+        return exchange(reader);
+    }
+
+    @Benchmark
+    @Group("whileRefreshing")
+    @GroupThreads(3)
+    public long lookupWhileRefreshing(Reader reader) throws Throwable {
+        return exchange(reader);
+    }
+
+    @Benchmark
+    @Group("whileRefreshing")
+    @GroupThreads(1)
+    public void refresh(Reader refresher) throws Throwable {
+        REFRESH.invokeExact(crossRates, (Map<?, ?>) baseTables.get(refresher.refreshes++ & 1));
+    }
+
+    private long exchange(Reader reader) throws Throwable {
+        var i = reader.next = (reader.next + 1) & (SAMPLES - 1);
+        var table = CURRENT.invokeExact(crossRates);
+        return (long) EXCHANGE.invokeExact(table, 100_00L, 2, from[i], to[i], 2, RoundingMode.HALF_EVEN);
+    }
+}
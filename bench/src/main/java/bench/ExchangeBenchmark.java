@@ -0,0 +1,73 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchanging USD amounts to EUR with BigDecimal rates from a Map (as returned by exchangeRatesTableApiCall)
+ * and with fixed-point longs from RateTable in ch09_CurrencyExchangeFixedPoint.
+ * <p>
+ * Run with the gc profiler to see that only the BigDecimal path allocates:
+ * sbt "bench/Jmh/run -prof gc bench.ExchangeBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeBenchmark {
+    private static final MethodHandle NEW_RATE_TABLE =
+            Chapters.constructor("RateTable", List.class, int.class);
+    private static final MethodHandle WITH_RATES =
+            Chapters.method("RateTable", "withRates", Chapters.type("RateTable"), String.class, Map.class);
+    private static final MethodHandle CURRENCY =
+            Chapters.method("RateTable", "currency", int.class, String.class);
+    private static final MethodHandle EXCHANGE = Chapters.method("RateTable", "exchange",
+            long.class, long.class, int.class, int.class, int.class, int.class, RoundingMode.class);
+
+    private static final int SAMPLES = 1 << 12;
+
+    private Map<String, BigDecimal> rates;
+    private Object table;
+    private int usd;
+    private int eur;
+    private BigDecimal[] amounts;
+    private long[] unscaledAmounts;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        rates = Map.of("EUR", new BigDecimal("0.81"), "JPY", new BigDecimal("103.25"));
+        table = WITH_RATES.invoke(NEW_RATE_TABLE.invoke(List.of("USD", "EUR", "JPY"), 6), "USD", rates);
+        usd = (int) CURRENCY.invokeExact(table, "USD");
+        eur = (int) CURRENCY.invokeExact(table, "EUR");
+
+        var random = new Random(42);
+        amounts = new BigDecimal[SAMPLES];
+        unscaledAmounts = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            unscaledAmounts[i] = random.nextLong(1_000_000_000L); // up to 10M USD
+            amounts[i] = BigDecimal.valueOf(unscaledAmounts[i], 2);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        var amount = amounts[next = (next + 1) & (SAMPLES - 1)];
+        return amount.multiply(rates.get("EUR")).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public long fixedPoint() throws Throwable {
+        var amount = unscaledAmounts[next = (next + 1) & (SAMPLES - 1)];
+        return (long) EXCHANGE.invokeExact(table, amount, 2, usd, eur, 2, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,103 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The sum of the first count odd numbers (filter, limit, collect), using oddNumbers from ch09_Stream123s
+ * on boxed streams and from ch09_Stream123sPrimitive on IntStreams, sequential and parallel;
+ * and the same for random numbers. The sums are collected instead of lists, because a list of 10^9 Integers
+ * doesn't fit in memory. primitiveParallelIterate buffers its elements, so it runs only up to 10^8, with a 3 GB heap.
+ * Boxed pipelines of 10^9 numbers take tens of seconds per operation:
+ * sbt "bench/Jmh/run -prof gc bench.StreamsBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamsBenchmark {
+    private static final MethodHandle BOXED_ODD_NUMBERS =
+            Chapters.staticMethod("ch09_Stream123s", "oddNumbers", Stream.class, Stream.class);
+    private static final MethodHandle PRIMITIVE_ODD_NUMBERS =
+            Chapters.staticMethod("ch09_Stream123sPrimitive", "oddNumbers", IntStream.class, IntStream.class);
+
+    @Param({"1000000", "100000000", "1000000000"})
+    public int count;
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public long boxed() throws Throwable {
+        var odd = (Stream<Integer>) BOXED_ODD_NUMBERS.invokeExact((Stream<?>) Stream.iterate(0, i -> i + 1));
+        return odd.limit(count).collect(Collectors.summingLong(Integer::longValue));
+    }
+
+    @Benchmark
+    public long primitive() throws Throwable {
+        var odd = (IntStream) PRIMITIVE_ODD_NUMBERS.invokeExact(IntStream.iterate(0, i -> i + 1));
+        return odd.limit(count).asLongStream().sum();
+    }
+
+    /**
+     * Counts for pipelines that keep their elements in memory: 10^9 ints alone take 4 GB,
+     * so only 10^6 and 10^8 are measured.
+     */
+    @State(Scope.Benchmark)
+    public static class BufferedCount {
+        @Param({"1000000", "100000000"})
+        public int count;
+    }
+
+    /**
+     * iterate can only be split by buffering its elements, and limit has to keep them in order.
+     * Buffering 10^8 elements runs out of a 1 GB heap, so the fork gets 3 GB (2 GB is enough on a single core,
+     * more threads buffer more elements past the limit).
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+    public long primitiveParallelIterate(BufferedCount buffered) throws Throwable {
+        var odd = (IntStream) PRIMITIVE_ODD_NUMBERS.invokeExact(IntStream.iterate(0, i -> i + 1).parallel());
+        return odd.limit(buffered.count).asLongStream().sum();
+    }
+
+    /**
+     * The first count odd numbers are the odd numbers of a range of 2 * count, which splits evenly.
+     */
+    @Benchmark
+    public long primitiveParallelRange() throws Throwable {
+        var odd = (IntStream) PRIMITIVE_ODD_NUMBERS.invokeExact(IntStream.range(0, 2 * count).parallel());
+        return odd.asLongStream().sum();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public long boxedRandom() throws Throwable {
+        var random = new Random(42);
+        var odd = (Stream<Integer>) BOXED_ODD_NUMBERS.invokeExact((Stream<?>) Stream.generate(random::nextInt));
+        return odd.limit(count).collect(Collectors.summingLong(Integer::longValue));
+    }
+
+    @Benchmark
+    public long primitiveRandom() throws Throwable {
+        var odd = (IntStream) PRIMITIVE_ODD_NUMBERS.invokeExact(new Random(42).ints());
+        return odd.limit(count).asLongStream().sum();
+    }
+
+    /**
+     * SplittableRandom gives each thread its own generator, and the sized stream of 2 * count random numbers
+     * has about count odd ones.
+     */
+    @Benchmark
+    public long primitiveParallelRandom() throws Throwable {
+        var odd = (IntStream) PRIMITIVE_ODD_NUMBERS.invokeExact(new SplittableRandom(42).ints(2L * count).parallel());
+        return odd.asLongStream().sum();
+    }
+}
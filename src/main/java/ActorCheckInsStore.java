@@ -0,0 +1,57 @@
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import akka.actor.*;
+import static akka.pattern.Patterns.ask;
+
+/**
+ * Check-ins are sent to CheckInsActor one by one or, when batchSize is greater than 1, through a CheckInsCoalescer.
+ */
+class ActorCheckInsStore implements CheckInsStore {
+    private final ActorSystem system;
+    private final ActorRef checkInsActor;
+    private final CheckInsCoalescer coalescer;
+    private final Duration askTimeout;
+
+    public ActorCheckInsStore(int batchSize, Duration askTimeout) {
+        this(batchSize, askTimeout, () -> new RankedCheckInsStore(new HashMapCheckInsStore()));
+    }
+
+    /**
+     * @param actorState creates the store used internally by CheckInsActor
+     */
+    public ActorCheckInsStore(int batchSize, Duration askTimeout, Supplier<CheckInsStore> actorState) {
+        this.system = ActorSystem.create("check-ins-store");
+        this.checkInsActor = system.actorOf(
+                Props.create(CheckInsActor.class, () -> new CheckInsActor(actorState.get())), "check-ins-actor");
+        this.coalescer = batchSize > 1 ? new CheckInsCoalescer(checkInsActor, batchSize, Duration.ofMillis(50)) : null;
+        this.askTimeout = askTimeout;
+    }
+
+    public void storeCheckIn(String cityName) {
+        if (coalescer != null) coalescer.storeCheckIn(cityName);
+        else checkInsActor.tell(new StoreCheckIn(cityName), null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> snapshot() {
+        var answer = coalescer != null
+                ? coalescer.currentCheckIns(askTimeout)
+                : ask(checkInsActor, new GetCurrentCheckIns(), askTimeout);
+        return (Map<String, Long>) answer.toCompletableFuture().join();
+    }
+
+    @Override
+    public void awaitStored() {
+        if (coalescer != null) coalescer.flush();
+        ask(checkInsActor, new GetTopCities(1), askTimeout).toCompletableFuture().join();
+    }
+
+    @Override
+    public void close() {
+        if (coalescer != null) coalescer.close();
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().join(); // the actor's state is closed when it stops
+    }
+}
@@ -0,0 +1,16 @@
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+class AtomicReferenceFunctionalCheckInsStore implements CheckInsStore {
+    private final AtomicReference<PersistentHashMap<String, Long>> cityCheckIns =
+            new AtomicReference<>(PersistentHashMap.empty());
+
+    public void storeCheckIn(String cityName) {
+        cityCheckIns.updateAndGet(oldCheckIns -> oldCheckIns.updatedWith(cityName,
+                (city, checkIns) -> checkIns != null ? checkIns + 1 : 1));
+    }
+
+    public Map<String, Long> snapshot() {
+        return cityCheckIns.get().toMap();
+    }
+}
@@ -0,0 +1,21 @@
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+class AtomicReferenceImperativeCheckInsStore implements CheckInsStore {
+    private final AtomicReference<PersistentHashMap<String, Long>> cityCheckIns =
+            new AtomicReference<>(PersistentHashMap.empty());
+
+    public void storeCheckIn(String cityName) {
+        var updated = false;
+        while (!updated) {
+            var currentCheckIns = cityCheckIns.get();
+            var newCheckIns = currentCheckIns.updatedWith(cityName,
+                    (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
+            updated = cityCheckIns.compareAndSet(currentCheckIns, newCheckIns);
+        }
+    }
+
+    public Map<String, Long> snapshot() {
+        return cityCheckIns.get().toMap();
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Free slots of a SlotGrid: a set bit means the slot is free. Nothing is allocated after the bitmap is created,
+ * but it's not thread-safe: searching for fits uses a scratch array owned by the bitmap.
+ */
+class AvailabilityBitmap {
+    private final SlotGrid grid;
+    private final long[] free;
+    private final long[] scratch;
+
+    private AvailabilityBitmap(SlotGrid grid) {
+        this.grid = grid;
+        this.free = new long[(grid.slots() + 63) >>> 6];
+        this.scratch = new long[free.length];
+    }
+
+    public static AvailabilityBitmap free(SlotGrid grid) {
+        var bitmap = new AvailabilityBitmap(grid);
+        for (int day = 0; day < grid.days; day++) {
+            var first = grid.slot(day, 0, false);
+            bitmap.setRange(first, first + grid.slotsPerDay, true);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Marks all slots that overlap the meeting as busy.
+     */
+    public AvailabilityBitmap markBusy(int day, int startMinuteOfDay, int endMinuteOfDay) {
+        setRange(grid.slot(day, startMinuteOfDay, false), grid.slot(day, endMinuteOfDay, true), false);
+        return this;
+    }
+
+    /**
+     * Keeps only slots that are free in both bitmaps.
+     */
+    public AvailabilityBitmap and(AvailabilityBitmap other) {
+        for (int i = 0; i < free.length; i++) free[i] &= other.free[i];
+        return this;
+    }
+
+    public boolean isFree(int slot) {
+        return (free[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * @return the first slot that starts lengthSlots free slots in a row, or -1
+     */
+    public int firstFit(int lengthSlots) {
+        var fits = fits(lengthSlots);
+        for (int i = 0; i < fits.length; i++) {
+            if (fits[i] != 0) return (i << 6) + Long.numberOfTrailingZeros(fits[i]);
+        }
+        return -1;
+    }
+
+    /**
+     * Writes starting slots of all fits to result (as many as fit in it).
+     *
+     * @return number of all fits
+     */
+    public int allFits(int lengthSlots, int[] result) {
+        var fits = fits(lengthSlots);
+        var count = 0;
+        for (int i = 0; i < fits.length; i++) {
+            for (var word = fits[i]; word != 0; word &= word - 1) { // clears the lowest set bit
+                if (count < result.length) result[count] = (i << 6) + Long.numberOfTrailingZeros(word);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void forEachFit(int lengthSlots, IntConsumer action) {
+        var fits = fits(lengthSlots);
+        for (int i = 0; i < fits.length; i++) {
+            for (var word = fits[i]; word != 0; word &= word - 1) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    /**
+     * Bit i of the result is set when slots i to i + lengthSlots - 1 are all free.
+     * When bit i means "run of k free slots starts at i", then bit i of (bits AND bits shifted by s) means
+     * "run of k + s free slots starts at i" (for s <= k), so the run length doubles in each step:
+     * log2(lengthSlots) steps over all words.
+     */
+    private long[] fits(int lengthSlots) {
+        if (lengthSlots <= 0) throw new IllegalArgumentException("Meeting length must be positive, got " + lengthSlots);
+        System.arraycopy(free, 0, scratch, 0, free.length);
+        for (int run = 1; run < lengthSlots; ) {
+            var shift = Math.min(run, lengthSlots - run);
+            andShiftedRight(scratch, shift);
+            run += shift;
+        }
+        return scratch;
+    }
+
+    /**
+     * bits &= bits >>> shift, with bits as one long number (bits[0] holds the lowest 64 bits).
+     * Words are processed from the lowest one, so each of them is combined with the words above it before they change.
+     */
+    private static void andShiftedRight(long[] bits, int shift) {
+        var words = shift >>> 6;
+        var offset = shift & 63;
+        for (int i = 0; i < bits.length; i++) {
+            var low = i + words < bits.length ? bits[i + words] : 0;
+            var high = i + words + 1 < bits.length ? bits[i + words + 1] : 0;
+            var shifted = offset == 0 ? low : (low >>> offset) | (high << (64 - offset));
+            bits[i] &= shifted;
+        }
+    }
+
+    private void setRange(int from, int to, boolean value) {
+        for (int slot = from; slot < to; ) {
+            var word = slot >>> 6;
+            var end = Math.min(to, (word + 1) << 6);
+            var mask = (end - slot == 64 ? -1L : ((1L << (end - slot)) - 1)) << slot;
+            if (value) free[word] |= mask;
+            else free[word] &= ~mask;
+            slot = end;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+import java.util.List;
+
+/**
+ * An external calendar service. Implementations may be slow, fail or both.
+ */
+interface CalendarApi {
+    List<ch08_SchedulingMeetingsImpure.MeetingTime> calendarEntries(String name);
+}
@@ -0,0 +1,111 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches calendars of many people in parallel, each call in its own virtual thread.
+ * A call for one person is attempted again right away when it fails, and also when it's still running after
+ * hedgeDelay (the 95th percentile of recent call latencies), so one slow call doesn't slow down everything.
+ * The first successful attempt wins and the remaining ones are cancelled. At most maxAttempts are made,
+ * and all of them need to finish before deadline.
+ */
+class CalendarFanOut implements AutoCloseable {
+    private final CalendarApi api;
+    private final int maxAttempts;
+    private final Duration deadline;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long[] recentLatencies = new long[1024]; // guarded by this
+    private int recordedLatencies = 0; // guarded by this
+
+    public CalendarFanOut(CalendarApi api, int maxAttempts, Duration deadline) {
+        this.api = api;
+        this.maxAttempts = maxAttempts;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @throws CompletionException when a calendar can't be fetched in maxAttempts or before the deadline
+     */
+    public Map<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>> calendarEntries(List<String> names) {
+        var hedgeDelay = hedgeDelay();
+        var calls = new LinkedHashMap<String, CompletableFuture<List<ch08_SchedulingMeetingsImpure.MeetingTime>>>();
+        for (var name : names) calls.put(name, calendarEntries(name, hedgeDelay));
+        var result = new LinkedHashMap<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>>();
+        calls.forEach((name, call) -> result.put(name, call.join()));
+        return result;
+    }
+
+    public CompletableFuture<List<ch08_SchedulingMeetingsImpure.MeetingTime>> calendarEntries(String name,
+                                                                                              Duration hedgeDelay) {
+        var call = new HedgedCall(name);
+        call.attempt();
+        CompletableFuture.delayedExecutor(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS, executor)
+                .execute(call::attempt);
+        return call.result.orTimeout(deadline.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 95th percentile of recent successful call latencies (or the deadline, when there are no calls yet).
+     */
+    public synchronized Duration hedgeDelay() {
+        var samples = Math.min(recordedLatencies, recentLatencies.length);
+        if (samples == 0) return deadline;
+        var sorted = Arrays.copyOf(recentLatencies, samples);
+        Arrays.sort(sorted);
+        return Duration.ofNanos(sorted[(int) Math.ceil(samples * 0.95) - 1]);
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        recentLatencies[recordedLatencies++ % recentLatencies.length] = nanos;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private class HedgedCall {
+        final String name;
+        final CompletableFuture<List<ch08_SchedulingMeetingsImpure.MeetingTime>> result = new CompletableFuture<>();
+        final List<Future<?>> attempts = new ArrayList<>(); // guarded by this
+        int failedAttempts = 0; // guarded by this
+
+        HedgedCall(String name) {
+            this.name = name;
+            result.whenComplete((entries, error) -> cancelAttempts());
+        }
+
+        synchronized void attempt() {
+            if (result.isDone() || attempts.size() == maxAttempts) return;
+            attempts.add(executor.submit(() -> {
+                var start = System.nanoTime();
+                try {
+                    var entries = api.calendarEntries(name);
+                    recordLatency(System.nanoTime() - start);
+                    result.complete(entries);
+                } catch (RuntimeException e) {
+                    failed(e);
+                }
+            }));
+        }
+
+        private synchronized void failed(RuntimeException error) {
+            failedAttempts++;
+            if (attempts.size() < maxAttempts) attempt();
+            else if (failedAttempts == maxAttempts) result.completeExceptionally(error);
+        }
+
+        private synchronized void cancelAttempts() {
+            for (var attempt : attempts) attempt.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import akka.actor.*;
+
+/**
+ * Stores check-ins in a CheckInsStore and asks the same store for top cities, so the store decides how
+ * cities are ranked: a RankedCheckInsStore keeps an all-time ranking, and an ExpiringCheckInsStore
+ * ranks only recent check-ins.
+ */
+class CheckInsActor extends AbstractActor {
+    private final CheckInsStore cityCheckIns; // only used by the actor, so it doesn't need to be thread-safe
+
+    public CheckInsActor() {
+        this(new RankedCheckInsStore(new HashMapCheckInsStore()));
+    }
+
+    public CheckInsActor(CheckInsStore cityCheckIns) {
+        this.cityCheckIns = cityCheckIns;
+    }
+
+    @Override
+    public void postStop() {
+        cityCheckIns.close();
+    }
+
+    public Receive createReceive() {
+        return receiveBuilder().match(StoreCheckIn.class, message -> {
+              cityCheckIns.storeCheckIn(message.cityName);
+        }).match(StoreCheckIns.class, message -> {
+            message.checkIns.forEach(cityCheckIns::storeCheckIns);
+        }).match(GetCurrentCheckIns.class, message -> {
+            getSender().tell(cityCheckIns.snapshot(), null);
+        }).match(GetTopCities.class, message -> {
+            getSender().tell(cityCheckIns.topN(message.n), null);
+        }).build();
+    }
+}
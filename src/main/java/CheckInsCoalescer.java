@@ -0,0 +1,99 @@
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import akka.actor.*;
+import static akka.pattern.Patterns.ask;
+
+/**
+ * Producer-side buffers that count check-ins per city and send them to CheckInsActor as StoreCheckIns batches,
+ * so the actor handles one message per batch instead of one message per check-in.
+ * Producers are spread across stripes by thread id, and each stripe is a separate buffer with its own lock,
+ * so producers don't wait for each other (with enough stripes, each one mostly uses its own).
+ * A stripe sends its batch when it contains maxBatchSize check-ins or when maxDelay passes after its first check-in.
+ * Rankings should use currentCheckIns, which flushes all stripes before asking the actor.
+ */
+class CheckInsCoalescer implements AutoCloseable {
+    private final ActorRef checkInsActor;
+    private final int maxBatchSize;
+    private final Duration maxDelay;
+    private final Stripe[] stripes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        var thread = new Thread(task, "check-ins-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CheckInsCoalescer(ActorRef checkInsActor, int maxBatchSize, Duration maxDelay) {
+        this(checkInsActor, maxBatchSize, maxDelay, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public CheckInsCoalescer(ActorRef checkInsActor, int maxBatchSize, Duration maxDelay, int stripes) {
+        if (stripes < 1) throw new IllegalArgumentException("At least one stripe is needed, got " + stripes);
+        this.checkInsActor = checkInsActor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) this.stripes[i] = new Stripe();
+    }
+
+    public void storeCheckIn(String cityName) {
+        stripes[(int) (Thread.currentThread().threadId() % stripes.length)].storeCheckIn(cityName);
+    }
+
+    /**
+     * Sends batches of all stripes. Batches are sent before this method returns,
+     * so messages sent to the actor afterwards are handled after all check-ins stored so far.
+     */
+    public void flush() {
+        for (var stripe : stripes) stripe.flush();
+    }
+
+    /**
+     * The flushed batches are enqueued before GetCurrentCheckIns, so the answer includes all buffered check-ins.
+     * It's synchronized, so answers of concurrent rankings are enqueued in the order of their flushes.
+     */
+    public synchronized CompletionStage<Object> currentCheckIns(Duration timeout) {
+        flush();
+        return ask(checkInsActor, new GetCurrentCheckIns(), timeout);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    private class Stripe {
+        private Map<String, Integer> buffer = new HashMap<>();
+        private int bufferedCheckIns = 0;
+        private ScheduledFuture<?> scheduledFlush;
+
+        synchronized void storeCheckIn(String cityName) {
+            buffer.merge(cityName, 1, Integer::sum);
+            bufferedCheckIns++;
+            if (bufferedCheckIns >= maxBatchSize) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void flush() {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (bufferedCheckIns > 0) {
+                checkInsActor.tell(new StoreCheckIns(buffer), null);
+                buffer = new HashMap<>();
+                bufferedCheckIns = 0;
+            }
+        }
+    }
+}
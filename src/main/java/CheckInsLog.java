@@ -0,0 +1,590 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * An append-only log of check-ins, with fixed-size records: timestamp (8 bytes), city id (4 bytes), check-ins (4 bytes).
+ * City names are written only once, to a separate file, in the order of their ids.
+ * <p>
+ * Appending doesn't write a record: each thread only counts its check-ins per city, in a table of its own,
+ * so appending threads don't share anything (see Appender). Every commitInterval, the committer thread
+ * adds up what all threads appended since the previous commit, writes one record per city, and forces
+ * all of them to disk at once (group commit): a crash may lose the check-ins of the last commitInterval,
+ * but nothing that was committed.
+ * <p>
+ * Records are written to memory-mapped segment files. The record's check-ins are written last,
+ * so a record that was torn by a crash has 0 check-ins and marks the end of the log.
+ * <p>
+ * Every snapshotInterval, the committed records are added to a snapshot
+ * of check-ins of all cities, and segments that are fully covered by the snapshot are deleted.
+ * Recovery loads the snapshot and replays only the records written after it.
+ * A directory can be used by only one open log at a time: open locks it until the log is closed (or abandoned,
+ * or its process ends).
+ */
+class CheckInsLog implements AutoCloseable {
+    static final int RECORD_BYTES = 16;
+    static final int SEGMENT_BYTES = RECORD_BYTES << 20;
+    private static final VarHandle RECORD_CHECK_INS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle APPENDED_CHECK_INS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Path directory;
+    private final FileChannel lockFile; // its lock is released when it's closed
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final CityDictionary cities;
+    private final FileChannel citiesFile;
+    private int loggedCities; // written by the committer thread (or by close, after the committer is stopped)
+    private final Map<Long, MappedByteBuffer> segments = new HashMap<>(); // guarded by this
+    private volatile Segment lastSegment = new Segment(-1, null);
+    private final ConcurrentLinkedQueue<Appender> appenders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Appender> currentAppender = ThreadLocal.withInitial(() -> {
+        var appender = new Appender(Thread.currentThread());
+        appenders.add(appender);
+        return appender;
+    });
+
+    // used only by the committer thread (and by close, after the committer is stopped)
+    private long endPosition;
+    private long committedPosition;
+    private long[] pendingCheckIns = new long[16]; // by city id, collected from appenders
+    private long snapshotPosition;
+    private long[] snapshotCheckIns;
+    private final Map<String, Long> recoveredCheckIns;
+    private final ScheduledExecutorService committer;
+
+    /**
+     * Check-ins appended by one thread, counted per city in an open-addressing table.
+     * Only the thread writes to its table and the committer only reads it, so neither of them ever waits:
+     * counts only grow, and the committer remembers how much of each count it has already written to the log.
+     * When a quarter of the table is used, the thread continues in a new table, twice as big,
+     * and the old one is dropped once the committer has logged the rest of it. Appending is on the hot path
+     * of every check-in, so the table is kept this sparse: a city is almost always found in the first slot.
+     */
+    private static final class Appender {
+        final Thread thread;
+        volatile AppendedCheckIns table = new AppendedCheckIns(64, null);
+
+        Appender(Thread thread) {
+            this.thread = thread;
+        }
+
+        void add(String cityName, long checkIns) {
+            var current = table;
+            var slot = current.slot(cityName);
+            if (current.cityNames[slot] == null) {
+                if (4 * (current.size + 1) > current.cityNames.length) {
+                    current = new AppendedCheckIns(2 * current.cityNames.length, current);
+                    table = current;
+                    slot = current.slot(cityName);
+                }
+                current.cityNames[slot] = cityName;
+                current.size++;
+            }
+            // released, so the committer that sees the new count also sees the city name
+            APPENDED_CHECK_INS.setRelease(current.checkIns, slot, current.checkIns[slot] + checkIns);
+        }
+    }
+
+    private static final class AppendedCheckIns {
+        final String[] cityNames;
+        final long[] checkIns;
+        final long[] logged; // used only by the committer, like cityIds
+        final int[] cityIds;
+        int size; // used only by the appending thread
+        AppendedCheckIns previous; // a full table that may still have check-ins to log, dropped by the committer
+
+        AppendedCheckIns(int capacity, AppendedCheckIns previous) {
+            this.cityNames = new String[capacity];
+            this.checkIns = new long[capacity];
+            this.logged = new long[capacity];
+            this.cityIds = new int[capacity];
+            this.previous = previous;
+        }
+
+        int slot(String cityName) {
+            var mask = cityNames.length - 1;
+            // multiplying spreads hash codes of similar names (like "City 10" and "City 11") over the whole table
+            var slot = (cityName.hashCode() * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+            while (cityNames[slot] != null && !cityNames[slot].equals(cityName)) slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+
+    private static class Segment {
+        final long index;
+        final MappedByteBuffer buffer;
+
+        Segment(long index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+
+    public static CheckInsLog open(Path directory) {
+        return open(directory, Duration.ofMillis(10), Duration.ofSeconds(1));
+    }
+
+    /**
+     * @throws IllegalStateException when the directory is used by another open log, in this or another process
+     */
+    public static CheckInsLog open(Path directory, Duration commitInterval, Duration snapshotInterval) {
+        FileChannel lockFile = null;
+        try {
+            lockFile = FileChannel.open(Files.createDirectories(directory).resolve("lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (tryLock(lockFile) == null) {
+                throw new IllegalStateException("Check-ins log in " + directory + " is already open");
+            }
+            return new CheckInsLog(directory, lockFile, commitInterval, snapshotInterval);
+        } catch (IOException e) {
+            closeQuietly(lockFile, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(lockFile, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Locks held by other processes are reported with null, and locks held by this process with an exception.
+     */
+    private static FileLock tryLock(FileChannel lockFile) throws IOException {
+        try {
+            return lockFile.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel file, Exception cause) {
+        if (file == null) return;
+        try {
+            file.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private CheckInsLog(Path directory, FileChannel lockFile, Duration commitInterval, Duration snapshotInterval)
+            throws IOException {
+        this.directory = directory;
+        this.lockFile = lockFile;
+        this.cities = new CityDictionary();
+        var cityNames = readCityNames();
+        for (var cityName : cityNames) cities.id(cityName);
+        this.loggedCities = cityNames.length;
+        this.citiesFile = FileChannel.open(directory.resolve("cities"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        citiesFile.truncate(namesLength(cityNames)); // drops a name torn by a crash
+        citiesFile.position(citiesFile.size());
+
+        // recovery: the snapshot + all complete records after it
+        snapshotCheckIns = new long[Math.max(16, cityNames.length)];
+        var snapshotted = readSnapshot();
+        deleteSegmentsBefore(snapshotted / SEGMENT_BYTES);
+        var position = replay(snapshotted);
+        discardTail(position);
+        if (position != snapshotted) { // so that the same records aren't replayed after every restart
+            writeSnapshot(position);
+            deleteSegmentsBefore(position / SEGMENT_BYTES);
+        }
+        if (!Files.exists(segmentPath(position / SEGMENT_BYTES))) {
+            synchronized (this) {
+                createSegment(position / SEGMENT_BYTES, true);
+            }
+        }
+        endPosition = position;
+        committedPosition = position;
+        snapshotPosition = position;
+        recoveredCheckIns = new HashMap<>();
+        for (int cityId = 0; cityId < cityNames.length; cityId++) {
+            if (snapshotCheckIns[cityId] > 0) recoveredCheckIns.put(cities.name(cityId), snapshotCheckIns[cityId]);
+        }
+
+        committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "check-ins-log-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit,
+                commitInterval.toNanos(), commitInterval.toNanos(), TimeUnit.NANOSECONDS);
+        committer.scheduleWithFixedDelay(this::compact,
+                snapshotInterval.toNanos(), snapshotInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Check-ins that were stored in this log before it was opened.
+     */
+    public Map<String, Long> recoveredCheckIns() {
+        return recoveredCheckIns;
+    }
+
+    /**
+     * Counts the check-ins in this thread's table. They are written to the log by the next commit.
+     */
+    public void append(String cityName, long checkIns) {
+        if (checkIns <= 0) return; // counts only grow
+        currentAppender.get().add(cityName, checkIns);
+    }
+
+    /**
+     * Waits until check-ins appended so far are committed to disk: the ones appended by this thread,
+     * and the ones appended by other threads before they passed their results to this thread (or ended).
+     */
+    public void awaitDurable() throws InterruptedException {
+        onCommitter(this::commit);
+    }
+
+    /**
+     * Commits all check-ins appended so far and writes a new snapshot.
+     */
+    public void snapshot() throws InterruptedException {
+        onCommitter(() -> {
+            commit();
+            compact();
+        });
+    }
+
+    private void onCommitter(Runnable task) throws InterruptedException {
+        try {
+            committer.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            // the log is closed, and close has committed everything
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        committer.shutdown();
+        try {
+            committer.awaitTermination(1, TimeUnit.MINUTES);
+            commit();
+            compact();
+            citiesFile.close();
+            lockFile.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the log the way a crash would: nothing more is committed, no snapshot is written,
+     * and the directory is unlocked, so it can be recovered by a new log. The log must not be used afterwards,
+     * and closing it does nothing.
+     */
+    public void abandon() {
+        if (!closed.compareAndSet(false, true)) return;
+        committer.shutdownNow();
+        try {
+            committer.awaitTermination(1, TimeUnit.MINUTES);
+            citiesFile.close();
+            lockFile.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    private void writeCityNames() throws IOException {
+        var size = cities.size();
+        if (loggedCities == size) return;
+        var names = new ByteArrayOutputStream();
+        for (; loggedCities < size; loggedCities++) names.write(encodeName(cities.name(loggedCities)).array());
+        citiesFile.write(ByteBuffer.wrap(names.toByteArray()));
+        citiesFile.force(false);
+    }
+
+    private MappedByteBuffer segment(long index) {
+        var segment = lastSegment;
+        return segment.index == index ? segment.buffer : mapSegment(index);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(long index) {
+        var segment = segments.get(index);
+        if (segment == null) segment = createSegment(index, false);
+        if (index > lastSegment.index) lastSegment = new Segment(index, segment);
+        return segment;
+    }
+
+    /**
+     * Writing to pages of a new, sparse file is slow: the file system allocates blocks on the first write to each page.
+     * Filling the file with zeros upfront (in the committer thread, before the segment is needed) avoids that.
+     */
+    private MappedByteBuffer createSegment(long index, boolean preallocate) { // called under this lock
+        try (var file = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (preallocate) {
+                var zeros = ByteBuffer.allocateDirect(1 << 20);
+                for (long position = 0; position < SEGMENT_BYTES; position += zeros.capacity()) {
+                    file.write(zeros.clear(), position);
+                }
+            }
+            var segment = file.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments.put(index, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void preallocateNextSegment() {
+        var next = endPosition / SEGMENT_BYTES + 1;
+        if (!segments.containsKey(next)) createSegment(next, true);
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("check-ins-%012d.log", index));
+    }
+
+    /**
+     * Group commit: writes the check-ins appended since the last commit as one record per city,
+     * and forces all of them to disk at once.
+     */
+    private void commit() {
+        for (var appender : appenders) {
+            var ended = !appender.thread.isAlive(); // checked first, so that its last check-ins are collected below
+            collect(appender.table);
+            if (ended) appenders.remove(appender);
+        }
+        var timestamp = System.currentTimeMillis();
+        for (int cityId = 0; cityId < pendingCheckIns.length; cityId++) {
+            if (pendingCheckIns[cityId] > 0) writeRecords(cityId, pendingCheckIns[cityId], timestamp);
+            pendingCheckIns[cityId] = 0;
+        }
+        var from = committedPosition;
+        var position = endPosition;
+        if (position == from) return;
+        if (position % SEGMENT_BYTES > SEGMENT_BYTES / 2) preallocateNextSegment();
+        try {
+            writeCityNames(); // all cities of the records are known by now
+            for (var index = from / SEGMENT_BYTES; index <= (position - 1) / SEGMENT_BYTES; index++) {
+                var start = index == from / SEGMENT_BYTES ? (int) (from % SEGMENT_BYTES) : 0;
+                var end = index == (position - 1) / SEGMENT_BYTES ? (int) ((position - 1) % SEGMENT_BYTES) + 1
+                                                                   : SEGMENT_BYTES;
+                segment(index).force(start, end - start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        committedPosition = position;
+    }
+
+    /**
+     * Adds check-ins that were appended to the table (and the tables it replaced) since they were last collected
+     * to pendingCheckIns.
+     */
+    private void collect(AppendedCheckIns table) {
+        if (table.previous != null) {
+            collect(table.previous); // it's no longer written to, so this collects all of its check-ins
+            table.previous = null;
+        }
+        for (int slot = 0; slot < table.checkIns.length; slot++) {
+            var checkIns = (long) APPENDED_CHECK_INS.getAcquire(table.checkIns, slot);
+            if (checkIns == table.logged[slot]) continue;
+            if (table.logged[slot] == 0) table.cityIds[slot] = cities.id(table.cityNames[slot]);
+            var cityId = table.cityIds[slot];
+            if (cityId >= pendingCheckIns.length) {
+                pendingCheckIns = Arrays.copyOf(pendingCheckIns, Math.max(cityId + 1, pendingCheckIns.length * 2));
+            }
+            pendingCheckIns[cityId] += checkIns - table.logged[slot];
+            table.logged[slot] = checkIns;
+        }
+    }
+
+    /**
+     * Records hold int check-ins, so more check-ins of a city are split into many records.
+     */
+    private void writeRecords(int cityId, long checkIns, long timestamp) {
+        for (; checkIns > 0; endPosition += RECORD_BYTES) {
+            var recordCheckIns = (int) Math.min(checkIns, Integer.MAX_VALUE);
+            var segment = segment(endPosition / SEGMENT_BYTES);
+            var offset = (int) (endPosition % SEGMENT_BYTES);
+            segment.putLong(offset, timestamp);
+            segment.putInt(offset + 8, cityId);
+            RECORD_CHECK_INS.setRelease(segment, offset + 12, recordCheckIns);
+            checkIns -= recordCheckIns;
+        }
+    }
+
+    private int recordCheckIns(long position) {
+        return (int) RECORD_CHECK_INS.getAcquire(segment(position / SEGMENT_BYTES), (int) (position % SEGMENT_BYTES) + 12);
+    }
+
+    /**
+     * Adds committed records to the snapshot, writes it, and deletes segments that are no longer needed.
+     * The snapshot is written to a temporary file first, so a crash never leaves a half-written snapshot.
+     */
+    private void compact() {
+        var to = committedPosition;
+        if (to == snapshotPosition) return;
+        for (var position = snapshotPosition; position < to; position += RECORD_BYTES) {
+            var segment = segment(position / SEGMENT_BYTES);
+            addCheckIns(segment.getInt((int) (position % SEGMENT_BYTES) + 8), recordCheckIns(position));
+        }
+        try {
+            writeSnapshot(to);
+            snapshotPosition = to;
+            deleteSegmentsBefore(to / SEGMENT_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeSnapshot(long position) throws IOException {
+        var temporary = directory.resolve("snapshot.tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeLong(position);
+            out.writeInt(snapshotCheckIns.length);
+            for (var checkIns : snapshotCheckIns) out.writeLong(checkIns);
+        }
+        try (var file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve("snapshot"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void addCheckIns(int cityId, long checkIns) {
+        if (cityId >= snapshotCheckIns.length) {
+            snapshotCheckIns = Arrays.copyOf(snapshotCheckIns, Math.max(cityId + 1, snapshotCheckIns.length * 2));
+        }
+        snapshotCheckIns[cityId] += checkIns;
+    }
+
+    private synchronized void deleteSegmentsBefore(long index) throws IOException {
+        segments.keySet().removeIf(segment -> segment < index);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                if (name.startsWith("check-ins-") && Long.parseLong(name.substring(10, 22)) < index) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private String[] readCityNames() throws IOException {
+        var file = directory.resolve("cities");
+        if (!Files.exists(file)) return new String[0];
+        var names = new ArrayList<String>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) names.add(in.readUTF());
+        } catch (EOFException e) {
+            // either the end of the file or a name torn by a crash
+        }
+        return names.toArray(new String[0]);
+    }
+
+    private static ByteBuffer encodeName(String cityName) {
+        var bytes = cityName.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + bytes.length).putShort((short) bytes.length).put(bytes).flip();
+    }
+
+    private static long namesLength(String[] cityNames) {
+        long length = 0;
+        for (var cityName : cityNames) length += encodeName(cityName).remaining();
+        return length;
+    }
+
+    /**
+     * @return the position of the log that the snapshot covers
+     */
+    private long readSnapshot() throws IOException {
+        var file = directory.resolve("snapshot");
+        if (!Files.exists(file)) return 0;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            var position = in.readLong();
+            var size = in.readInt();
+            for (int cityId = 0; cityId < size; cityId++) addCheckIns(cityId, in.readLong());
+            return position;
+        }
+    }
+
+    /**
+     * Adds all complete records starting at the position to the snapshot.
+     * A record of a city whose name is missing was not committed (names are committed first), so it also ends the log.
+     *
+     * @return the position of the end of the log
+     */
+    private long replay(long position) {
+        while (Files.exists(segmentPath(position / SEGMENT_BYTES))) {
+            var segment = segment(position / SEGMENT_BYTES);
+            for (var offset = (int) (position % SEGMENT_BYTES); offset < SEGMENT_BYTES; offset += RECORD_BYTES) {
+                var checkIns = segment.getInt(offset + 12);
+                var cityId = segment.getInt(offset + 8);
+                if (checkIns == 0 || cityId >= loggedCities) return position;
+                addCheckIns(cityId, checkIns);
+                position += RECORD_BYTES;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Records after the end of the log may have been written just before a crash, after an incomplete record.
+     * They are zeroed, so that they are not mistaken for new records when the log is replayed next time.
+     */
+    private void discardTail(long position) throws IOException {
+        var index = position / SEGMENT_BYTES;
+        if (Files.exists(segmentPath(index))) {
+            var segment = segment(index);
+            for (var offset = (int) (position % SEGMENT_BYTES); offset < SEGMENT_BYTES; offset += 8) {
+                segment.putLong(offset, 0);
+            }
+            segment.force();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                if (name.startsWith("check-ins-") && Long.parseLong(name.substring(10, 22)) > index) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A place where check-ins are stored and from which the ranking thread reads them.
+ */
+interface CheckInsStore extends AutoCloseable {
+    void storeCheckIn(String cityName);
+
+    /**
+     * Returns a copy of current check-ins that is safe to use by the ranking thread.
+     */
+    Map<String, Long> snapshot();
+
+    default void storeCheckIns(String cityName, long checkIns) {
+        for (long i = 0; i < checkIns; i++) storeCheckIn(cityName);
+    }
+
+    /**
+     * The n cities with the most check-ins, best first. By default, they are found in a snapshot,
+     * with a heap that keeps only the best n cities seen so far. Stores that rank cities as check-ins
+     * are stored (like RankedCheckInsStore) don't need to visit all cities.
+     */
+    default List<Map.Entry<String, Long>> topN(int n) {
+        var best = new PriorityQueue<Map.Entry<String, Long>>(Map.Entry.comparingByValue());
+        for (var city : snapshot().entrySet()) {
+            best.add(city);
+            if (best.size() > n) best.poll();
+        }
+        var result = new ArrayList<>(best);
+        result.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return result;
+    }
+
+    /**
+     * Waits until all check-ins stored so far by this thread are processed.
+     * Only asynchronous stores (like actors) need to wait, others store check-ins before returning.
+     */
+    default void awaitStored() {
+    }
+
+    @Override
+    default void close() {
+    }
+}
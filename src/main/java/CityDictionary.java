@@ -0,0 +1,36 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each city name a dense int id: 0, 1, 2, ... in the order cities are first seen. Ids never change.
+ * Looking up a known city doesn't allocate (ids are boxed only once, when they are created).
+ */
+class CityDictionary {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private int size = 0; // guarded by this
+
+    public int id(String cityName) {
+        var id = ids.get(cityName);
+        return id != null ? id : ids.computeIfAbsent(cityName, this::register);
+    }
+
+    public String name(int cityId) {
+        return names[cityId];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized Integer register(String cityName) {
+        if (size == names.length) {
+            var newNames = new String[size * 2];
+            System.arraycopy(names, 0, newNames, 0, size);
+            newNames[size] = cityName;
+            names = newNames;
+        } else {
+            names[size] = cityName;
+        }
+        return size++;
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ranking index that is updated with each check-in, so top cities can be read without sorting all cities.
+ * Cities with the same number of check-ins share a bucket and buckets form a list ordered by check-ins.
+ * Incrementing a city moves it to one of the neighbouring buckets, and topN(k) only visits k cities.
+ * It's not thread-safe: it should be owned by a single thread (like the state of CheckInsActor).
+ */
+class CityRanking {
+    private static class Bucket {
+        final long checkIns;
+        final Set<String> cities = new LinkedHashSet<>();
+        Bucket lower;
+        Bucket higher;
+
+        Bucket(long checkIns) {
+            this.checkIns = checkIns;
+        }
+    }
+
+    private final Map<String, Bucket> cityBuckets = new HashMap<>();
+    private Bucket lowest;
+    private Bucket highest;
+
+    public void add(String cityName, long checkIns) {
+        if (checkIns <= 0) throw new IllegalArgumentException("Check-ins can only be added, got " + checkIns);
+        var current = cityBuckets.get(cityName);
+        var newCheckIns = (current != null ? current.checkIns : 0) + checkIns;
+
+        // buckets are ordered, so the new one is somewhere above the current one (usually right above it)
+        var below = current;
+        var candidate = current != null ? current.higher : lowest;
+        while (candidate != null && candidate.checkIns < newCheckIns) {
+            below = candidate;
+            candidate = candidate.higher;
+        }
+        var target = candidate != null && candidate.checkIns == newCheckIns
+                ? candidate
+                : insertBetween(below, candidate, newCheckIns);
+        target.cities.add(cityName);
+        cityBuckets.put(cityName, target);
+
+        if (current != null) {
+            current.cities.remove(cityName);
+            if (current.cities.isEmpty()) unlink(current);
+        }
+    }
+
+    public long checkIns(String cityName) {
+        var bucket = cityBuckets.get(cityName);
+        return bucket != null ? bucket.checkIns : 0;
+    }
+
+    public int size() {
+        return cityBuckets.size();
+    }
+
+    public List<Map.Entry<String, Long>> topN(int n) {
+        var result = new ArrayList<Map.Entry<String, Long>>(Math.min(n, cityBuckets.size()));
+        for (var bucket = highest; bucket != null && result.size() < n; bucket = bucket.lower) {
+            for (var city : bucket.cities) {
+                if (result.size() == n) break;
+                result.add(Map.entry(city, bucket.checkIns));
+            }
+        }
+        return result;
+    }
+
+    private Bucket insertBetween(Bucket lower, Bucket higher, long checkIns) {
+        var bucket = new Bucket(checkIns);
+        bucket.lower = lower;
+        bucket.higher = higher;
+        if (lower != null) lower.higher = bucket; else lowest = bucket;
+        if (higher != null) higher.lower = bucket; else highest = bucket;
+        return bucket;
+    }
+
+    private void unlink(Bucket bucket) {
+        if (bucket.lower != null) bucket.lower.higher = bucket.higher; else lowest = bucket.higher;
+        if (bucket.higher != null) bucket.higher.lower = bucket.lower; else highest = bucket.lower;
+    }
+}
@@ -0,0 +1,9 @@
+import akka.actor.*;
+
+class ComputeRanking {
+    public final ActorRef checkInsActor;
+
+    public ComputeRanking(ActorRef checkInsActor) {
+        this.checkInsActor = checkInsActor;
+    }
+}
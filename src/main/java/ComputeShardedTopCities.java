@@ -0,0 +1,19 @@
+import java.time.Duration;
+import java.util.List;
+
+import akka.actor.*;
+
+/**
+ * Top cities of check-ins sharded by city across many CheckInsActors. The answer is sent back to the sender.
+ */
+class ComputeShardedTopCities {
+    public final List<ActorRef> shards;
+    public final int n;
+    public final Duration timeout;
+
+    public ComputeShardedTopCities(List<ActorRef> shards, int n, Duration timeout) {
+        this.shards = shards;
+        this.n = n;
+        this.timeout = timeout;
+    }
+}
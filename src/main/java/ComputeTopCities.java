@@ -0,0 +1,11 @@
+import akka.actor.*;
+
+class ComputeTopCities {
+    public final ActorRef checkInsActor;
+    public final int n;
+
+    public ComputeTopCities(ActorRef checkInsActor, int n) {
+        this.checkInsActor = checkInsActor;
+        this.n = n;
+    }
+}
@@ -0,0 +1,15 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class ConcurrentHashMapCheckInsStore implements CheckInsStore {
+    private final ConcurrentHashMap<String, Long> cityCheckIns = new ConcurrentHashMap<>();
+
+    public void storeCheckIn(String cityName) {
+        cityCheckIns.compute(cityName, (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
+    }
+
+    public Map<String, Long> snapshot() {
+        return new HashMap<>(cityCheckIns);
+    }
+}
@@ -0,0 +1,32 @@
+import java.time.Duration;
+
+/**
+ * A score that halves every halfLife. Instead of decaying all scores periodically,
+ * the score is decayed only when it's used, based on the time of its last update.
+ */
+class DecayedCounter implements ExpiringCounter {
+    private final double decayPerMilli;
+    private double score = 0;
+    private long updatedAt = 0;
+    private boolean expired = false;
+
+    DecayedCounter(Duration halfLife) {
+        this.decayPerMilli = Math.log(2) / halfLife.toMillis();
+    }
+
+    public synchronized boolean add(long checkIns, long now) {
+        if (expired) return false;
+        score = value(now) + checkIns;
+        updatedAt = Math.max(now, updatedAt);
+        return true;
+    }
+
+    public synchronized double value(long now) {
+        return score * Math.exp(-decayPerMilli * Math.max(0, now - updatedAt));
+    }
+
+    public synchronized boolean expire(long now) {
+        if (value(now) < 0.5) expired = true; // it would be rounded to 0 check-ins anyway
+        return expired;
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe check-ins counted in primitive longs indexed by city id.
+ * Counters live in fixed-size pages that are created when the first city of a page is seen,
+ * so a check-in never copies or allocates anything (apart from the first check-in of a new city).
+ */
+class DictionaryCheckInsStore implements CheckInsStore {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final CityDictionary cities;
+    private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(1 << 16);
+
+    public DictionaryCheckInsStore() {
+        this(new CityDictionary());
+    }
+
+    public DictionaryCheckInsStore(CityDictionary cities) {
+        this.cities = cities;
+    }
+
+    public void storeCheckIn(String cityName) {
+        storeCheckIn(cities.id(cityName));
+    }
+
+    public void storeCheckIn(int cityId) {
+        page(cityId).getAndIncrement(cityId & (PAGE_SIZE - 1));
+    }
+
+    @Override
+    public void storeCheckIns(String cityName, long checkIns) {
+        var cityId = cities.id(cityName);
+        page(cityId).getAndAdd(cityId & (PAGE_SIZE - 1), checkIns);
+    }
+
+    public long checkIns(int cityId) {
+        var page = pages.get(cityId >>> PAGE_BITS);
+        return page != null ? page.get(cityId & (PAGE_SIZE - 1)) : 0;
+    }
+
+    public Map<String, Long> snapshot() {
+        var result = new HashMap<String, Long>();
+        var size = cities.size();
+        for (int cityId = 0; cityId < size; cityId++) {
+            var checkIns = checkIns(cityId);
+            if (checkIns > 0) result.put(cities.name(cityId), checkIns);
+        }
+        return result;
+    }
+
+    private AtomicLongArray page(int cityId) {
+        var index = cityId >>> PAGE_BITS;
+        var page = pages.get(index);
+        if (page == null) {
+            pages.compareAndSet(index, null, new AtomicLongArray(PAGE_SIZE));
+            page = pages.get(index);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,92 @@
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cities whose counters expired are removed when they are found by snapshot (which visits all cities anyway)
+ * and by a sweep that a write runs once every sweepInterval, so a store that is only written to doesn't keep
+ * cities that are long gone. Memory is bounded by the number of cities with check-ins in the last
+ * two sweep intervals (plus the window or the decay time), no matter how long the store is used.
+ * Recent check-ins change all the time, so they can't be kept sorted: topN uses a snapshot.
+ */
+class ExpiringCheckInsStore implements CheckInsStore {
+    private final ConcurrentHashMap<String, ExpiringCounter> cityCheckIns = new ConcurrentHashMap<>();
+    private final Supplier<ExpiringCounter> newCounter;
+    private final LongSupplier currentTimeMillis;
+    private final long sweepIntervalMillis;
+    private final AtomicLong nextSweepAt;
+
+    public ExpiringCheckInsStore(Supplier<ExpiringCounter> newCounter, Duration sweepInterval,
+                                 LongSupplier currentTimeMillis) {
+        this.newCounter = newCounter;
+        this.currentTimeMillis = currentTimeMillis;
+        this.sweepIntervalMillis = Math.max(1, sweepInterval.toMillis());
+        this.nextSweepAt = new AtomicLong(currentTimeMillis.getAsLong() + sweepIntervalMillis);
+    }
+
+    /**
+     * Check-ins from the last window, with the precision of window / buckets.
+     */
+    public static ExpiringCheckInsStore windowed(Duration window, int buckets, LongSupplier currentTimeMillis) {
+        WindowedCounter.checkBuckets(window, buckets); // counters are created later, with the first check-ins
+        return new ExpiringCheckInsStore(() -> new WindowedCounter(window, buckets), window, currentTimeMillis);
+    }
+
+    public static ExpiringCheckInsStore decayed(Duration halfLife, LongSupplier currentTimeMillis) {
+        return new ExpiringCheckInsStore(() -> new DecayedCounter(halfLife), halfLife, currentTimeMillis);
+    }
+
+    public void storeCheckIn(String cityName) {
+        storeCheckIns(cityName, 1);
+    }
+
+    @Override
+    public void storeCheckIns(String cityName, long checkIns) {
+        var now = currentTimeMillis.getAsLong();
+        while (true) {
+            var counter = cityCheckIns.get(cityName);
+            if (counter == null) counter = cityCheckIns.computeIfAbsent(cityName, city -> newCounter.get());
+            if (counter.add(checkIns, now)) break;
+            cityCheckIns.remove(cityName, counter); // expired in the meantime, try again with a new one
+        }
+        var sweepAt = nextSweepAt.get();
+        if (now >= sweepAt && nextSweepAt.compareAndSet(sweepAt, now + sweepIntervalMillis)) {
+            cityCheckIns.forEach((city, counter) -> {
+                if (counter.expire(now)) cityCheckIns.remove(city, counter);
+            });
+        }
+    }
+
+    /**
+     * Number of cities the store keeps, including the ones that expired but weren't removed yet.
+     */
+    public int size() {
+        return cityCheckIns.size();
+    }
+
+    /**
+     * Current values of all counters (fractional in case of decayed scores).
+     */
+    public Map<String, Double> scores() {
+        var now = currentTimeMillis.getAsLong();
+        var result = new HashMap<String, Double>();
+        cityCheckIns.forEach((city, counter) -> {
+            if (counter.expire(now)) cityCheckIns.remove(city, counter);
+            else result.put(city, counter.value(now));
+        });
+        return result;
+    }
+
+    public Map<String, Long> snapshot() {
+        var result = new HashMap<String, Long>();
+        scores().forEach((city, score) -> {
+            var checkIns = Math.round(score);
+            if (checkIns > 0) result.put(city, checkIns);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Check-ins of a single city that become less important (or are forgotten) as time passes.
+ * Methods take the current time in milliseconds, so a counter is updated only when it's used
+ * and there is no need to scan all cities to expire old check-ins.
+ */
+interface ExpiringCounter {
+    /**
+     * @return false if the counter has already expired, so a new one needs to be used instead
+     */
+    boolean add(long checkIns, long now);
+
+    double value(long now);
+
+    /**
+     * Marks the counter as expired if it doesn't hold any check-ins, so it can be removed.
+     */
+    boolean expire(long now);
+}
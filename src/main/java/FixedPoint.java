@@ -0,0 +1,86 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Decimal arithmetic on unscaled longs: the value of unscaled with scale s is unscaled / 10^s.
+ * Java doesn't have value types (yet), so there is no Money object: the unscaled value and its scale
+ * are passed around separately, and nothing is allocated, except when a product doesn't fit in a long,
+ * or when scales differ by more than 18. Scales are between 0 and 18.
+ */
+final class FixedPoint {
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private FixedPoint() {
+    }
+
+    static long one(int scale) {
+        return POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * @throws ArithmeticException when the value doesn't fit in a long with the given scale
+     */
+    static long of(BigDecimal value, int scale, RoundingMode mode) {
+        return value.setScale(scale, mode).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    static String toString(long unscaled, int scale) {
+        return toBigDecimal(unscaled, scale).toPlainString();
+    }
+
+    /**
+     * @throws ArithmeticException when the value doesn't fit in a long with the new scale
+     */
+    static long rescale(long unscaled, int scale, int newScale, RoundingMode mode) {
+        if (Math.abs(newScale - scale) >= POWERS_OF_TEN.length) { // 10^19 doesn't fit in a long
+            return of(toBigDecimal(unscaled, scale), newScale, mode);
+        }
+        if (newScale >= scale) return Math.multiplyExact(unscaled, POWERS_OF_TEN[newScale - scale]);
+        return divide(unscaled, POWERS_OF_TEN[scale - newScale], mode);
+    }
+
+    /**
+     * a (with scaleA) * b (with scaleB), rounded to resultScale. The exact product has scale scaleA + scaleB,
+     * which may be up to 36.
+     *
+     * @throws ArithmeticException when the result doesn't fit in a long
+     */
+    static long multiply(long a, int scaleA, long b, int scaleB, int resultScale, RoundingMode mode) {
+        var high = Math.multiplyHigh(a, b);
+        var low = a * b;
+        if (high == (low >> 63)) return rescale(low, scaleA + scaleB, resultScale, mode);
+        return of(toBigDecimal(a, scaleA).multiply(toBigDecimal(b, scaleB)), resultScale, mode); // overflowed
+    }
+
+    /**
+     * dividend / divisor, rounded like BigDecimal does it. The divisor must be positive.
+     *
+     * @throws ArithmeticException when the result needs rounding and mode is UNNECESSARY
+     */
+    static long divide(long dividend, long divisor, RoundingMode mode) {
+        var quotient = dividend / divisor;
+        var remainder = dividend % divisor;
+        if (remainder == 0) return quotient;
+        var sign = dividend < 0 ? -1 : 1;
+        var comparedToHalf = Long.compare(Math.abs(remainder), divisor - Math.abs(remainder));
+        var awayFromZero = switch (mode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> comparedToHalf >= 0;
+            case HALF_DOWN -> comparedToHalf > 0;
+            case HALF_EVEN -> comparedToHalf > 0 || (comparedToHalf == 0 && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+        return awayFromZero ? quotient + sign : quotient;
+    }
+}
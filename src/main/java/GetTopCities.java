@@ -0,0 +1,7 @@
+class GetTopCities {
+    public final int n;
+
+    public GetTopCities(int n) {
+        this.n = n;
+    }
+}
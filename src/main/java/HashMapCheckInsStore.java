@@ -0,0 +1,23 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The noSynchronization strategy. It's not thread-safe, so it should only be used by a single thread
+ * (it's the default state of CheckInsActor).
+ */
+class HashMapCheckInsStore implements CheckInsStore {
+    private final Map<String, Long> cityCheckIns = new HashMap<>();
+
+    public void storeCheckIn(String cityName) {
+        storeCheckIns(cityName, 1);
+    }
+
+    @Override
+    public void storeCheckIns(String cityName, long checkIns) {
+        cityCheckIns.merge(cityName, checkIns, Long::sum);
+    }
+
+    public Map<String, Long> snapshot() {
+        return new HashMap<>(cityCheckIns);
+    }
+}
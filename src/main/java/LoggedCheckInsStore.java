@@ -0,0 +1,67 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * Appends each check-in to the log before storing it in another store,
+ * which starts with the check-ins recovered from the log.
+ */
+class LoggedCheckInsStore implements CheckInsStore {
+    private final CheckInsLog log;
+    private final CheckInsStore cityCheckIns;
+
+    public LoggedCheckInsStore(CheckInsLog log, CheckInsStore cityCheckIns) {
+        this.log = log;
+        this.cityCheckIns = cityCheckIns;
+        log.recoveredCheckIns().forEach(cityCheckIns::storeCheckIns);
+    }
+
+    /**
+     * A store with a log in a new temporary directory, which is deleted when the store is closed.
+     */
+    public static LoggedCheckInsStore temporary(CheckInsStore cityCheckIns) {
+        try {
+            var directory = Files.createTempDirectory("check-ins");
+            return new LoggedCheckInsStore(CheckInsLog.open(directory), cityCheckIns) {
+                @Override
+                public void close() {
+                    super.close();
+                    try {
+                        CheckInsLog.delete(directory);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void storeCheckIn(String cityName) {
+        log.append(cityName, 1);
+        cityCheckIns.storeCheckIn(cityName);
+    }
+
+    @Override
+    public void storeCheckIns(String cityName, long checkIns) {
+        log.append(cityName, checkIns);
+        cityCheckIns.storeCheckIns(cityName, checkIns);
+    }
+
+    public Map<String, Long> snapshot() {
+        return cityCheckIns.snapshot();
+    }
+
+    @Override
+    public void awaitStored() {
+        cityCheckIns.awaitStored();
+    }
+
+    @Override
+    public void close() {
+        cityCheckIns.close();
+        log.close();
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.List;
+
+/**
+ * The best meeting time, attendees that are available then, and ones that would miss the meeting.
+ */
+class MeetingSuggestion {
+    public final ch08_SchedulingMeetingsImpure.MeetingTime time;
+    public final List<String> available;
+    public final List<String> unavailable;
+
+    public MeetingSuggestion(ch08_SchedulingMeetingsImpure.MeetingTime time, List<String> available,
+                             List<String> unavailable) {
+        this.time = time;
+        this.available = available;
+        this.unavailable = unavailable;
+    }
+
+    @Override
+    public String toString() {
+        return "MeetingSuggestion[time=" + time + ", available=" + available + ", unavailable=" + unavailable + ']';
+    }
+}
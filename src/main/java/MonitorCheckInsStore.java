@@ -0,0 +1,18 @@
+import java.util.HashMap;
+import java.util.Map;
+
+class MonitorCheckInsStore implements CheckInsStore {
+    private final Map<String, Long> cityCheckIns = new HashMap<>();
+
+    public void storeCheckIn(String cityName) {
+        synchronized (cityCheckIns) {
+            cityCheckIns.compute(cityName, (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
+        }
+    }
+
+    public Map<String, Long> snapshot() {
+        synchronized (cityCheckIns) {
+            return new HashMap<>(cityCheckIns);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Hash array mapped trie: each level uses 5 bits of the key's hash to choose one of up to 32 children,
+ * and stores only the children that exist (a bitmap says which ones do).
+ * Keys with exactly the same hash end up together in a collision node.
+ * An update allocates O(log32 n) small nodes, no matter how big the map is.
+ */
+final class PersistentHashMap<K, V> {
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new BitmapNode(0, new Object[0]), 0);
+
+    private final BitmapNode root;
+    private final int size;
+
+    private PersistentHashMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        var leaf = root.find(key, hash(key), 0);
+        return leaf != null ? (V) leaf.value : null;
+    }
+
+    public PersistentHashMap<K, V> updated(K key, V value) {
+        if (value == null) throw new IllegalArgumentException("PersistentHashMap doesn't store null values");
+        var leaf = new Leaf(key, value, hash(key));
+        var newRoot = (BitmapNode) root.updated(leaf, 0);
+        if (newRoot == root) return this;
+        return new PersistentHashMap<>(newRoot, root.find(key, leaf.hash, 0) == null ? size + 1 : size);
+    }
+
+    /**
+     * Similar to HashMap.compute, but returns a new map. The current value is null when there is no key.
+     */
+    public PersistentHashMap<K, V> updatedWith(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return updated(key, remapping.apply(key, get(key)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach(leaf -> action.accept((K) leaf.key, (V) leaf.value));
+    }
+
+    public Map<K, V> toMap() {
+        var result = new HashMap<K, V>(size * 2);
+        forEach(result::put);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        var result = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (result.length() > 1) result.append(", ");
+            result.append(key).append('=').append(value);
+        });
+        return result.append('}').toString();
+    }
+
+    private static int hash(Object key) {
+        var h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Leaf {
+        final Object key;
+        final Object value;
+        final int hash;
+
+        Leaf(Object key, Object value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+
+        boolean hasKey(Object key, int hash) {
+            return this.hash == hash && this.key.equals(key);
+        }
+    }
+
+    private interface Node {
+        Leaf find(Object key, int hash, int shift);
+
+        /**
+         * Returns this when nothing changed, so unchanged parents don't need to be copied either.
+         */
+        Node updated(Leaf leaf, int shift);
+
+        void forEach(Consumer<Leaf> action);
+    }
+
+    /**
+     * Children are Leafs or Nodes, packed in the order of bits set in the bitmap.
+     */
+    private static final class BitmapNode implements Node {
+        final int bitmap;
+        final Object[] children;
+
+        BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        public Leaf find(Object key, int hash, int shift) {
+            var bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            var child = children[index(bit)];
+            if (child instanceof Leaf) {
+                var leaf = (Leaf) child;
+                return leaf.hasKey(key, hash) ? leaf : null;
+            }
+            return ((Node) child).find(key, hash, shift + 5);
+        }
+
+        public Node updated(Leaf leaf, int shift) {
+            var bit = bit(leaf.hash, shift);
+            var index = index(bit);
+            if ((bitmap & bit) == 0) {
+                var newChildren = new Object[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, index);
+                newChildren[index] = leaf;
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                return new BitmapNode(bitmap | bit, newChildren);
+            }
+
+            var child = children[index];
+            Object newChild;
+            if (child instanceof Leaf) {
+                var existing = (Leaf) child;
+                if (existing.hasKey(leaf.key, leaf.hash)) {
+                    if (existing.value == leaf.value) return this;
+                    newChild = leaf;
+                } else {
+                    newChild = merge(existing, existing.hash, leaf, shift + 5);
+                }
+            } else {
+                newChild = ((Node) child).updated(leaf, shift + 5);
+                if (newChild == child) return this;
+            }
+            var newChildren = children.clone();
+            newChildren[index] = newChild;
+            return new BitmapNode(bitmap, newChildren);
+        }
+
+        public void forEach(Consumer<Leaf> action) {
+            for (var child : children) {
+                if (child instanceof Leaf) action.accept((Leaf) child);
+                else ((Node) child).forEach(action);
+            }
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+    }
+
+    /**
+     * Creates the smallest subtree that holds both the existing child (a Leaf or a CollisionNode) and the new leaf.
+     */
+    private static Object merge(Object existing, int existingHash, Leaf leaf, int shift) {
+        if (existingHash == leaf.hash) {
+            return existing instanceof Leaf
+                    ? new CollisionNode(leaf.hash, new Leaf[]{(Leaf) existing, leaf})
+                    : ((CollisionNode) existing).updated(leaf, shift);
+        }
+        var existingBit = BitmapNode.bit(existingHash, shift);
+        var leafBit = BitmapNode.bit(leaf.hash, shift);
+        if (existingBit == leafBit) {
+            return new BitmapNode(existingBit, new Object[]{merge(existing, existingHash, leaf, shift + 5)});
+        }
+        var children = Integer.compareUnsigned(existingBit, leafBit) < 0
+                ? new Object[]{existing, leaf}
+                : new Object[]{leaf, existing};
+        return new BitmapNode(existingBit | leafBit, children);
+    }
+
+    /**
+     * Keys that have exactly the same hash, so the trie can't tell them apart.
+     */
+    private static final class CollisionNode implements Node {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        public Leaf find(Object key, int hash, int shift) {
+            for (var leaf : leaves) {
+                if (leaf.hasKey(key, hash)) return leaf;
+            }
+            return null;
+        }
+
+        public Node updated(Leaf leaf, int shift) {
+            if (leaf.hash != hash) {
+                return (Node) merge(this, hash, leaf, shift);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].hasKey(leaf.key, leaf.hash)) {
+                    if (leaves[i].value == leaf.value) return this;
+                    var newLeaves = leaves.clone();
+                    newLeaves[i] = leaf;
+                    return new CollisionNode(hash, newLeaves);
+                }
+            }
+            var newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+            newLeaves[leaves.length] = leaf;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        public void forEach(Consumer<Leaf> action) {
+            for (var leaf : leaves) action.accept(leaf);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a CityRanking next to a store, so top cities can be read without visiting all cities.
+ * The ranking only goes up, so it's meant for stores that keep all-time check-ins, not for an ExpiringCheckInsStore.
+ * Like CityRanking, it's not thread-safe (around a HashMapCheckInsStore, it's the default state of CheckInsActor).
+ */
+class RankedCheckInsStore implements CheckInsStore {
+    private final CheckInsStore cityCheckIns;
+    private final CityRanking ranking = new CityRanking();
+
+    public RankedCheckInsStore(CheckInsStore cityCheckIns) {
+        this.cityCheckIns = cityCheckIns;
+    }
+
+    public void storeCheckIn(String cityName) {
+        cityCheckIns.storeCheckIn(cityName);
+        ranking.add(cityName, 1);
+    }
+
+    @Override
+    public void storeCheckIns(String cityName, long checkIns) {
+        cityCheckIns.storeCheckIns(cityName, checkIns);
+        ranking.add(cityName, checkIns);
+    }
+
+    public Map<String, Long> snapshot() {
+        return cityCheckIns.snapshot();
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> topN(int n) {
+        return ranking.topN(n);
+    }
+
+    @Override
+    public void awaitStored() {
+        cityCheckIns.awaitStored();
+    }
+
+    @Override
+    public void close() {
+        cityCheckIns.close();
+    }
+}
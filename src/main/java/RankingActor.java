@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import akka.actor.*;
+import static akka.pattern.Patterns.ask;
+import static akka.pattern.Patterns.pipe;
+
+class RankingActor extends AbstractActor {
+    @SuppressWarnings("unchecked")
+    public Receive createReceive() {
+        return receiveBuilder().match(ComputeRanking.class, message -> {
+            ask(message.checkInsActor, new GetCurrentCheckIns(), 1000).foreach(
+                    cityCheckIns -> {
+                        System.out.println("[actors] Computing ranking based on: " + cityCheckIns);
+                        return this;
+                    },
+                    getContext().dispatcher()
+            );
+        }).match(ComputeTopCities.class, message -> {
+            ask(message.checkInsActor, new GetTopCities(message.n), 1000).foreach(
+                    topCities -> {
+                        System.out.println("[actors] Top cities: " + topCities);
+                        return this;
+                    },
+                    getContext().dispatcher()
+            );
+        }).match(ComputeShardedTopCities.class, message -> {
+            // each shard has different cities, so the top n cities are among the top n cities of each shard
+            var shardTopCities = message.shards.stream()
+                    .map(shard -> ask(shard, new GetTopCities(message.n), message.timeout).toCompletableFuture())
+                    .toList();
+            var topCities = CompletableFuture.allOf(shardTopCities.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(done -> {
+                        var merged = new ArrayList<Map.Entry<String, Long>>();
+                        for (var shard : shardTopCities) merged.addAll((List<Map.Entry<String, Long>>) shard.join());
+                        merged.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+                        return merged.subList(0, Math.min(message.n, merged.size()));
+                    });
+            pipe(topCities, getContext().dispatcher()).to(getSender());
+        }).build();
+    }
+}
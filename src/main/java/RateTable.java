@@ -0,0 +1,89 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exchange rates between currencies, as unscaled longs with the given scale, in an array indexed by
+ * (from currency index * number of currencies + to currency index). Currency indices are resolved once,
+ * using currency, so exchanging doesn't look anything up by name. Tables are immutable:
+ * withRates returns a new table.
+ */
+class RateTable {
+    public final int scale;
+    private final List<String> currencies;
+    private final Map<String, Integer> indices;
+    private final long[] rates; // 0 when there is no rate
+
+    public RateTable(List<String> currencies, int scale) {
+        this.scale = scale;
+        this.currencies = List.copyOf(currencies);
+        this.indices = new HashMap<>();
+        for (int i = 0; i < currencies.size(); i++) indices.put(currencies.get(i), i);
+        this.rates = new long[currencies.size() * currencies.size()];
+        for (int i = 0; i < currencies.size(); i++) rates[i * currencies.size() + i] = FixedPoint.one(scale);
+    }
+
+    /**
+     * A table with the same currencies and scale as table, but with the given rates (which must not be modified later).
+     */
+    RateTable(RateTable table, long[] rates) {
+        this.scale = table.scale;
+        this.currencies = table.currencies;
+        this.indices = table.indices;
+        this.rates = rates;
+    }
+
+    /**
+     * A new table with rates from the given currency, as returned by exchangeRatesTableApiCall
+     * (rounded to the table's scale). Unknown currencies are ignored.
+     */
+    public RateTable withRates(String from, Map<String, BigDecimal> fromRates) {
+        var updated = rates.clone();
+        var fromIndex = currency(from);
+        fromRates.forEach((to, rate) -> {
+            var toIndex = currency(to);
+            if (fromIndex >= 0 && toIndex >= 0) {
+                updated[fromIndex * currencies.size() + toIndex] = FixedPoint.of(rate, scale, RoundingMode.HALF_EVEN);
+            }
+        });
+        return new RateTable(this, updated);
+    }
+
+    public List<String> currencies() {
+        return currencies;
+    }
+
+    /**
+     * @return index of the currency in this table, or -1
+     */
+    public int currency(String code) {
+        return indices.getOrDefault(code, -1);
+    }
+
+    public boolean hasRate(int from, int to) {
+        return rates[from * currencies.size() + to] != 0;
+    }
+
+    /**
+     * Unscaled rate with the table's scale, or 0 when there is no rate.
+     */
+    public long rate(int from, int to) {
+        return rates[from * currencies.size() + to];
+    }
+
+    /**
+     * Exchanges amount (with amountScale) from one currency to another, rounded to resultScale.
+     *
+     * @throws IllegalArgumentException when there is no rate between the currencies
+     * @throws ArithmeticException when the result doesn't fit in a long
+     */
+    public long exchange(long amount, int amountScale, int from, int to, int resultScale, RoundingMode mode) {
+        var rate = rates[from * currencies.size() + to];
+        if (rate == 0) {
+            throw new IllegalArgumentException("No rate from " + currencies.get(from) + " to " + currencies.get(to));
+        }
+        return FixedPoint.multiply(amount, amountScale, rate, scale, resultScale, mode);
+    }
+}
@@ -0,0 +1,85 @@
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static akka.pattern.Patterns.ask;
+
+/**
+ * Check-ins sharded by city hash across CheckInsActors. Each shard runs on its own thread (a pinned dispatcher),
+ * so shards never wait for each other, or for other actors, to be scheduled: with enough cores, all of them
+ * store check-ins at the same time. With fewer cores than shards, they take turns, and sharding only adds
+ * the cost of merging answers. When batchSize is greater than 1, each shard gets its own CheckInsCoalescer.
+ * <p>
+ * Rankings are computed by RankingActor from top cities of each shard,
+ * so only n cities per shard are sent, instead of all check-ins of all cities.
+ */
+class ShardedCheckInsStore implements CheckInsStore {
+    private static final Config SHARD_DISPATCHER = ConfigFactory.parseString(
+            "check-ins-shard-dispatcher { type = PinnedDispatcher, executor = thread-pool-executor }");
+
+    private final ActorSystem system;
+    private final List<ActorRef> shards = new ArrayList<>();
+    private final List<CheckInsCoalescer> coalescers = new ArrayList<>();
+    private final ActorRef rankingActor;
+    private final Duration askTimeout;
+
+    public ShardedCheckInsStore(int shards, int batchSize, Duration askTimeout) {
+        this.system = ActorSystem.create("check-ins-shards", SHARD_DISPATCHER.withFallback(ConfigFactory.load()));
+        for (int i = 0; i < shards; i++) {
+            var props = Props.create(CheckInsActor.class).withDispatcher("check-ins-shard-dispatcher");
+            var shard = system.actorOf(props, "check-ins-shard-" + i);
+            this.shards.add(shard);
+            if (batchSize > 1) coalescers.add(new CheckInsCoalescer(shard, batchSize, Duration.ofMillis(50)));
+        }
+        this.rankingActor = system.actorOf(Props.create(RankingActor.class), "ranking-actor");
+        this.askTimeout = askTimeout;
+    }
+
+    public void storeCheckIn(String cityName) {
+        var shard = Math.floorMod(cityName.hashCode(), shards.size());
+        if (!coalescers.isEmpty()) coalescers.get(shard).storeCheckIn(cityName);
+        else shards.get(shard).tell(new StoreCheckIn(cityName), null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> snapshot() {
+        for (var coalescer : coalescers) coalescer.flush();
+        var shardCheckIns = shards.stream()
+                .map(shard -> ask(shard, new GetCurrentCheckIns(), askTimeout).toCompletableFuture())
+                .toList();
+        var result = new HashMap<String, Long>();
+        for (var checkIns : shardCheckIns) result.putAll((Map<String, Long>) checkIns.join());
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Map.Entry<String, Long>> topCities(int n) {
+        for (var coalescer : coalescers) coalescer.flush();
+        var topCities = ask(rankingActor, new ComputeShardedTopCities(shards, n, askTimeout), askTimeout);
+        return (List<Map.Entry<String, Long>>) topCities.toCompletableFuture().join();
+    }
+
+    @Override
+    public void awaitStored() {
+        for (var coalescer : coalescers) coalescer.flush();
+        CompletableFuture.allOf(shards.stream()
+                .map(shard -> ask(shard, new GetTopCities(1), askTimeout).toCompletableFuture())
+                .toArray(CompletableFuture<?>[]::new)).join();
+    }
+
+    @Override
+    public void close() {
+        for (var coalescer : coalescers) coalescer.close();
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller calls load and all callers that ask for the key
+ * before it returns wait for it and get its result, or its exception. The next call after that calls load again,
+ * so nothing is cached.
+ */
+class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public V call(K key, Function<? super K, ? extends V> load) {
+        calls.increment();
+        var flight = new CompletableFuture<V>();
+        var running = flights.putIfAbsent(key, flight);
+        if (running != null) return join(running);
+
+        loads.increment();
+        try {
+            V value = load.apply(key);
+            flights.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            failures.increment();
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    public SingleFlightStats stats() {
+        var calls = this.calls.sum();
+        var loads = this.loads.sum();
+        return new SingleFlightStats(calls, loads, calls - loads, failures.sum());
+    }
+}
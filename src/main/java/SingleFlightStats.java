@@ -0,0 +1,22 @@
+/**
+ * All calls, calls that called load, calls that waited for another one instead (saved calls),
+ * and loads that failed.
+ */
+class SingleFlightStats {
+    public final long calls;
+    public final long loads;
+    public final long coalesced;
+    public final long failures;
+
+    public SingleFlightStats(long calls, long loads, long coalesced, long failures) {
+        this.calls = calls;
+        this.loads = loads;
+        this.coalesced = coalesced;
+        this.failures = failures;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d calls, %d loads (%d saved), %d failed loads", calls, loads, coalesced, failures);
+    }
+}
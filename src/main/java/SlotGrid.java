@@ -0,0 +1,43 @@
+/**
+ * Maps days and times to slot numbers: the working hours of each day are split into slots of slotMinutes.
+ * Each day is followed by a gap slot that is never free, so a meeting never spans two days.
+ */
+class SlotGrid {
+    public final int days;
+    public final int dayStartHour;
+    public final int dayEndHour;
+    public final int slotMinutes;
+    public final int slotsPerDay;
+
+    public SlotGrid(int days, int dayStartHour, int dayEndHour, int slotMinutes) {
+        if ((dayEndHour - dayStartHour) * 60 % slotMinutes != 0) {
+            throw new IllegalArgumentException("Working hours can't be split into " + slotMinutes + "-minute slots");
+        }
+        this.days = days;
+        this.dayStartHour = dayStartHour;
+        this.dayEndHour = dayEndHour;
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = (dayEndHour - dayStartHour) * 60 / slotMinutes;
+    }
+
+    public int slots() {
+        return days * (slotsPerDay + 1);
+    }
+
+    /**
+     * The slot that contains the given minute of the day (or the first slot after it, when rounding up).
+     */
+    public int slot(int day, int minuteOfDay, boolean roundUp) {
+        var minutes = Math.min(Math.max(minuteOfDay - dayStartHour * 60, 0), slotsPerDay * slotMinutes);
+        var slotOfDay = roundUp ? (minutes + slotMinutes - 1) / slotMinutes : minutes / slotMinutes;
+        return day * (slotsPerDay + 1) + slotOfDay;
+    }
+
+    public int day(int slot) {
+        return slot / (slotsPerDay + 1);
+    }
+
+    public int startMinute(int slot) {
+        return dayStartHour * 60 + slot % (slotsPerDay + 1) * slotMinutes;
+    }
+}
@@ -0,0 +1,7 @@
+class StoreCheckIn {
+    public final String cityName;
+
+    public StoreCheckIn(String cityName) {
+        this.cityName = cityName;
+    }
+}
@@ -0,0 +1,12 @@
+import java.util.Map;
+
+/**
+ * Many check-ins in one message: number of check-ins for each city.
+ */
+class StoreCheckIns {
+    public final Map<String, Integer> checkIns;
+
+    public StoreCheckIns(Map<String, Integer> checkIns) {
+        this.checkIns = checkIns;
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Each city gets its own LongAdder, which spreads concurrent increments of the same city
+ * across many cells instead of making all threads fight for a single lock, bin or CAS.
+ * The map itself is written to only once per city, when it's seen for the first time.
+ */
+class StripedCheckInsStore implements CheckInsStore {
+    private final ConcurrentHashMap<String, LongAdder> cityCheckIns = new ConcurrentHashMap<>();
+
+    public void storeCheckIn(String cityName) {
+        var checkIns = cityCheckIns.get(cityName); // lock-free fast path for cities we've already seen
+        if (checkIns == null) {
+            checkIns = cityCheckIns.computeIfAbsent(cityName, city -> new LongAdder());
+        }
+        checkIns.increment();
+    }
+
+    @Override
+    public void storeCheckIns(String cityName, long checkIns) {
+        cityCheckIns.computeIfAbsent(cityName, city -> new LongAdder()).add(checkIns);
+    }
+
+    public Map<String, Long> snapshot() {
+        var result = new HashMap<String, Long>();
+        cityCheckIns.forEach((city, checkIns) -> result.put(city, checkIns.sum()));
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+import java.time.Duration;
+
+/**
+ * A ring of time buckets. Check-ins are added to the bucket of the current time. When the ring comes back
+ * to a bucket that holds check-ins from the previous round, they are older than the window and are dropped.
+ */
+class WindowedCounter implements ExpiringCounter {
+    private final long bucketMillis;
+    private final long[] checkIns;
+    private final long[] bucketIds;
+    private boolean expired = false;
+
+    WindowedCounter(Duration window, int buckets) {
+        checkBuckets(window, buckets);
+        this.bucketMillis = window.toMillis() / buckets;
+        this.checkIns = new long[buckets];
+        this.bucketIds = new long[buckets];
+    }
+
+    static void checkBuckets(Duration window, int buckets) {
+        if (buckets < 1) throw new IllegalArgumentException("At least one bucket is needed, got " + buckets);
+        if (window.toMillis() < buckets) {
+            throw new IllegalArgumentException("Buckets can't be shorter than 1 ms, got " + buckets + " in " + window);
+        }
+    }
+
+    public synchronized boolean add(long checkIns, long now) {
+        if (expired) return false;
+        var bucketId = now / bucketMillis;
+        var slot = (int) (bucketId % this.checkIns.length);
+        if (bucketIds[slot] != bucketId) {
+            bucketIds[slot] = bucketId;
+            this.checkIns[slot] = 0;
+        }
+        this.checkIns[slot] += checkIns;
+        return true;
+    }
+
+    public synchronized double value(long now) {
+        var oldestBucketId = now / bucketMillis - checkIns.length + 1;
+        long result = 0;
+        for (int slot = 0; slot < checkIns.length; slot++) {
+            if (bucketIds[slot] >= oldestBucketId) result += checkIns[slot];
+        }
+        return result;
+    }
+
+    public synchronized boolean expire(long now) {
+        if (value(now) == 0) expired = true;
+        return expired;
+    }
+}
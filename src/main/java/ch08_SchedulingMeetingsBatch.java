@@ -0,0 +1,276 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduling many meetings one by one fetches the same calendars again and again, and doesn't take meetings
+ * created by earlier requests into account. Here, a whole batch of requests is scheduled at once:
+ * each calendar is fetched once, meetings are placed one after another in in-memory calendars,
+ * and groups of people that don't share any meetings are scheduled in parallel.
+ */
+public class ch08_SchedulingMeetingsBatch {
+    /**
+     * Simulates a bulk endpoint of the calendar service that creates many meetings in one call.
+     */
+    static void createMeetingsApiCall(List<ScheduledMeeting> meetings) {
+        System.out.printf("SIDE-EFFECT: Created %d meetings\n", meetings.size());
+    }
+
+    public static void main(String[] args) {
+        var random = new Random(42);
+        var calls = new AtomicInteger(0);
+        CalendarApi api = name -> { // 1-3 random meetings, always the same for the same person
+            calls.incrementAndGet();
+            var calendarRandom = new Random(name.hashCode());
+            var meetings = new ArrayList<ch08_SchedulingMeetingsImpure.MeetingTime>();
+            for (int i = calendarRandom.nextInt(3); i >= 0; i--) {
+                var start = 8 + calendarRandom.nextInt(8);
+                meetings.add(new ch08_SchedulingMeetingsImpure.MeetingTime(start, start + 1));
+            }
+            return meetings;
+        };
+
+        // 20,000 meetings of 2-5 people in 500 teams of 10
+        var requests = new ArrayList<MeetingRequest>();
+        for (int i = 0; i < 20_000; i++) {
+            var team = random.nextInt(500);
+            var attendees = new LinkedHashSet<String>();
+            for (int j = 2 + random.nextInt(4); j > 0; j--) attendees.add("Person " + (team * 10 + random.nextInt(10)));
+            requests.add(new MeetingRequest(List.copyOf(attendees), 1 + random.nextInt(2), random.nextInt(3)));
+        }
+        requests.add(new MeetingRequest(List.of(), 1, 0)); // nobody is busy, so it's placed at the start of the day
+
+        try (var fanOut = new CalendarFanOut(api, 3, Duration.ofSeconds(10))) {
+            var scheduler = new BatchScheduler(fanOut, ForkJoinPool.commonPool());
+            var start = System.nanoTime();
+            var meetings = scheduler.scheduleAll(requests);
+            var elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            var people = calls.get();
+            assert (meetings.size() == requests.size());
+            assert (meetings.get(meetings.size() - 1).time.startHour == 8);
+            assert (people <= 5000); // each person's calendar was fetched once
+
+            // nobody has two meetings at the same time
+            var calendars = new HashMap<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>>();
+            for (var meeting : meetings) {
+                if (meeting.time == null) continue;
+                for (var attendee : meeting.request.attendees) {
+                    var calendar = calendars.computeIfAbsent(attendee, name -> new ArrayList<>(api.calendarEntries(name)));
+                    assert (calendar.stream().noneMatch(entry ->
+                            meeting.time.endHour > entry.startHour && entry.endHour > meeting.time.startHour));
+                    calendar.add(meeting.time);
+                }
+            }
+            var placed = meetings.stream().filter(meeting -> meeting.time != null).count();
+            System.out.printf("[batch] Placed %d of %d meetings of %d people in %d ms\n",
+                    placed, requests.size(), people, elapsedMillis);
+        }
+
+        // a calendar that can't be fetched fails only the requests of its owner, not the whole batch
+        CalendarApi failingApi = name -> {
+            if (name.equals("Person 0")) throw new RuntimeException("Calendar of " + name + " is unavailable");
+            return api.calendarEntries(name);
+        };
+        try (var fanOut = new CalendarFanOut(failingApi, 3, Duration.ofSeconds(10))) {
+            var meetings = new BatchScheduler(fanOut, ForkJoinPool.commonPool()).scheduleAll(List.of(
+                    new MeetingRequest(List.of("Person 0", "Person 1"), 1, 0),
+                    new MeetingRequest(List.of("Person 1", "Person 2"), 1, 0)));
+            assert (meetings.get(0).time == null && meetings.get(1).time != null);
+        }
+    }
+}
+
+class MeetingRequest {
+    public final List<String> attendees;
+    public final int lengthHours;
+    public final int priority;
+
+    public MeetingRequest(List<String> attendees, int lengthHours, int priority) {
+        this.attendees = attendees;
+        this.lengthHours = lengthHours;
+        this.priority = priority;
+    }
+}
+
+/**
+ * A request and its meeting time (null when there is no time that all attendees can attend,
+ * or when a calendar of one of them couldn't be fetched).
+ */
+class ScheduledMeeting {
+    public final MeetingRequest request;
+    public final ch08_SchedulingMeetingsImpure.MeetingTime time;
+
+    public ScheduledMeeting(MeetingRequest request, ch08_SchedulingMeetingsImpure.MeetingTime time) {
+        this.request = request;
+        this.time = time;
+    }
+}
+
+/**
+ * Schedules a batch of requests between 8 and 16:
+ * <ol>
+ *     <li>fetches calendars of all distinct attendees at once (each of them once); requests of people whose calendars
+ *     can't be fetched are not scheduled, but the rest of the batch is,</li>
+ *     <li>splits requests into groups that don't share any attendees (people connected by requests, using union-find),</li>
+ *     <li>schedules each group in the pool: requests with higher priority first (in the order of the batch otherwise),
+ *     each at the earliest time free for all its attendees, which is then marked busy in their availability bitmaps,</li>
+ *     <li>creates all meetings in one bulk call.</li>
+ * </ol>
+ */
+class BatchScheduler {
+    private static final SlotGrid WORKING_DAY = new SlotGrid(1, 8, 16, 60);
+
+    private final CalendarFanOut calendars;
+    private final ForkJoinPool pool;
+
+    public BatchScheduler(CalendarFanOut calendars, ForkJoinPool pool) {
+        this.calendars = calendars;
+        this.pool = pool;
+    }
+
+    /**
+     * @return scheduled meetings in the order of requests
+     */
+    public List<ScheduledMeeting> scheduleAll(List<MeetingRequest> requests) {
+        var people = new HashMap<String, Integer>();
+        for (var request : requests) {
+            for (var attendee : request.attendees) people.putIfAbsent(attendee, people.size());
+        }
+        var hedgeDelay = calendars.hedgeDelay();
+        var calls = new HashMap<String, CompletableFuture<List<ch08_SchedulingMeetingsImpure.MeetingTime>>>();
+        for (var person : people.keySet()) calls.put(person, calendars.calendarEntries(person, hedgeDelay));
+        var entries = new HashMap<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>>();
+        calls.forEach((person, call) -> {
+            try {
+                entries.put(person, call.join());
+            } catch (CompletionException | CancellationException e) {
+                // the person's calendar is unknown, so their requests stay without a time
+            }
+        });
+
+        var groups = new PeopleGroups(people.size());
+        for (var request : requests) {
+            if (request.attendees.isEmpty()) continue;
+            var first = people.get(request.attendees.get(0));
+            for (var attendee : request.attendees) groups.join(first, people.get(attendee));
+        }
+        var groupRequests = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < requests.size(); i++) {
+            var attendees = requests.get(i).attendees;
+            // a request without attendees doesn't share anyone's calendar, so it's a group of its own
+            var group = attendees.isEmpty() ? -1 - i : groups.group(people.get(attendees.get(0)));
+            groupRequests.computeIfAbsent(group, g -> new ArrayList<>()).add(i);
+        }
+
+        var times = new ch08_SchedulingMeetingsImpure.MeetingTime[requests.size()];
+        var tasks = new ArrayList<Callable<Void>>();
+        for (var group : groupRequests.values()) {
+            tasks.add(() -> {
+                scheduleGroup(requests, group, entries, times);
+                return null;
+            });
+        }
+        for (var task : pool.invokeAll(tasks)) join(task);
+
+        var result = new ArrayList<ScheduledMeeting>(requests.size());
+        var created = new ArrayList<ScheduledMeeting>();
+        for (int i = 0; i < requests.size(); i++) {
+            var meeting = new ScheduledMeeting(requests.get(i), times[i]);
+            result.add(meeting);
+            if (meeting.time != null) created.add(meeting);
+        }
+        ch08_SchedulingMeetingsBatch.createMeetingsApiCall(created);
+        return result;
+    }
+
+    /**
+     * Only this task uses calendars of people from the group and writes times of the group's requests.
+     * Entries are missing for people whose calendars couldn't be fetched.
+     */
+    private static void scheduleGroup(List<MeetingRequest> requests, List<Integer> group,
+                                      Map<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>> entries,
+                                      ch08_SchedulingMeetingsImpure.MeetingTime[] times) {
+        group.sort(Comparator.comparingInt((Integer i) -> -requests.get(i).priority)); // stable, so keeps batch order
+        var availability = new HashMap<String, AvailabilityBitmap>();
+        for (var i : group) {
+            var request = requests.get(i);
+            if (!entries.keySet().containsAll(request.attendees)) continue;
+            var free = AvailabilityBitmap.free(WORKING_DAY);
+            for (var attendee : request.attendees) {
+                free.and(availability.computeIfAbsent(attendee, person -> {
+                    var calendar = AvailabilityBitmap.free(WORKING_DAY);
+                    for (var meeting : entries.get(person)) {
+                        calendar.markBusy(0, meeting.startHour * 60, meeting.endHour * 60);
+                    }
+                    return calendar;
+                }));
+            }
+            var slot = free.firstFit(request.lengthHours);
+            if (slot < 0) continue;
+            var startHour = WORKING_DAY.startMinute(slot) / 60;
+            var time = new ch08_SchedulingMeetingsImpure.MeetingTime(startHour, startHour + request.lengthHours);
+            for (var attendee : request.attendees) {
+                availability.get(attendee).markBusy(0, time.startHour * 60, time.endHour * 60);
+            }
+            times[i] = time;
+        }
+    }
+
+    private static void join(Future<Void> task) {
+        try {
+            task.get();
+        } catch (Exception e) {
+            throw new RuntimeException("Scheduling a group of meetings failed", e);
+        }
+    }
+}
+
+/**
+ * Union-find: people that have a meeting together (directly or through other people) end up in the same group.
+ */
+class PeopleGroups {
+    private final int[] parent;
+    private final int[] size;
+
+    PeopleGroups(int people) {
+        parent = new int[people];
+        size = new int[people];
+        for (int i = 0; i < people; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    int group(int person) {
+        while (parent[person] != person) {
+            parent[person] = parent[parent[person]]; // path halving
+            person = parent[person];
+        }
+        return person;
+    }
+
+    void join(int person1, int person2) {
+        var group1 = group(person1);
+        var group2 = group(person2);
+        if (group1 == group2) return;
+        if (size[group1] < size[group2]) {
+            var smaller = group1;
+            group1 = group2;
+            group2 = smaller;
+        }
+        parent[group2] = group1; // the smaller group joins the bigger one
+        size[group1] += size[group2];
+    }
+}
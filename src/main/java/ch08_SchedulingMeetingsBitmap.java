@@ -0,0 +1,54 @@
+import java.util.List;
+
+/**
+ * scheduleNoFailures creates a MeetingTime for each possible slot and checks it against every meeting.
+ * Here, each calendar is a bitmap of free slots, availability of many people is an AND of their bitmaps,
+ * and slots that fit a meeting are found with a few bit operations on whole words (64 slots at a time).
+ */
+public class ch08_SchedulingMeetingsBitmap {
+    static ch08_SchedulingMeetingsImpure.MeetingTime scheduleBitmap(
+            List<ch08_SchedulingMeetingsImpure.MeetingTime> person1Entries,
+            List<ch08_SchedulingMeetingsImpure.MeetingTime> person2Entries, int lengthHours) {
+        var workingDay = new SlotGrid(1, 8, 16, 60);
+        var availability = AvailabilityBitmap.free(workingDay);
+        for (var meeting : person1Entries) availability.markBusy(0, meeting.startHour * 60, meeting.endHour * 60);
+        for (var meeting : person2Entries) availability.markBusy(0, meeting.startHour * 60, meeting.endHour * 60);
+
+        var slot = availability.firstFit(lengthHours);
+        if (slot < 0) return null;
+        var startHour = workingDay.startMinute(slot) / 60;
+        return new ch08_SchedulingMeetingsImpure.MeetingTime(startHour, startHour + lengthHours);
+    }
+
+    public static void main(String[] args) {
+        var alice = List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(8, 10),
+                new ch08_SchedulingMeetingsImpure.MeetingTime(11, 12));
+        var bob = List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(9, 10));
+        assert (scheduleBitmap(alice, bob, 1).equals(new ch08_SchedulingMeetingsImpure.MeetingTime(10, 11)));
+        assert (scheduleBitmap(alice, bob, 2).equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 14)));
+        assert (scheduleBitmap(alice, bob, 3).equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 15)));
+        assert (scheduleBitmap(alice, bob, 4).equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 16)));
+        assert (scheduleBitmap(alice, bob, 5) == null);
+
+        // a working week in 5-minute slots: 5 days * 96 slots
+        var week = new SlotGrid(5, 8, 16, 5);
+        var carol = AvailabilityBitmap.free(week);
+        var dave = AvailabilityBitmap.free(week);
+        for (int day = 0; day < 5; day++) carol.markBusy(day, 8 * 60, 15 * 60 + 10); // free only 15:10-16:00
+        dave.markBusy(0, 15 * 60 + 30, 16 * 60);
+        dave.markBusy(1, 8 * 60, 16 * 60);
+        var both = AvailabilityBitmap.free(week).and(carol).and(dave);
+
+        var halfAnHour = 6;
+        var first = both.firstFit(halfAnHour);
+        assert (week.day(first) == 2 && week.startMinute(first) == 15 * 60 + 10); // Monday is too short, Tuesday is busy
+        var fits = new int[16];
+        assert (both.allFits(halfAnHour, fits) == 15); // starting from 15:10 to 15:30 on Wednesday, Thursday and Friday
+        assert (both.firstFit(11) == -1); // nothing fits in one day, and meetings don't span two days
+
+        var starts = new StringBuilder();
+        both.forEachFit(halfAnHour, slot -> starts.append(String.format("day %d %02d:%02d, ",
+                week.day(slot), week.startMinute(slot) / 60, week.startMinute(slot) % 60)));
+        System.out.println("[bitmap] Possible half-an-hour meetings: " + starts);
+    }
+}
@@ -0,0 +1,200 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The same people are often scheduled again and again, seconds apart, and each time all their calendars are fetched.
+ * Here, calendars are cached for a while, and meetings created through the cache are added to cached calendars.
+ */
+public class ch08_SchedulingMeetingsCache {
+    static MeetingSuggestion schedule(CachedCalendarApi calendars, CalendarFanOut fanOut, List<String> attendees,
+                                      int lengthHours) {
+        var suggestion = ch08_SchedulingMeetingsSweepLine.bestSlot(fanOut.calendarEntries(attendees), lengthHours, 8, 16);
+        if (suggestion != null) calendars.createMeeting(suggestion.available, suggestion.time);
+        return suggestion;
+    }
+
+    public static void main(String[] args) {
+        var calls = new AtomicInteger(0);
+        CalendarApi api = name -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return name.equals("Alice")
+                    ? List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(8, 10),
+                              new ch08_SchedulingMeetingsImpure.MeetingTime(11, 12))
+                    : List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(9, 10));
+        };
+        var now = new AtomicLong(0);
+        var calendars = new CachedCalendarApi(api, 2, Duration.ofMinutes(1), now::get);
+
+        // concurrent misses of the same person share a single call
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) executor.submit(() -> calendars.calendarEntries("Alice"));
+        }
+        assert (calls.get() == 1);
+
+        // meetings created through the cache are added to cached calendars of all attendees
+        try (var fanOut = new CalendarFanOut(calendars, 3, Duration.ofSeconds(1))) {
+            var meeting = schedule(calendars, fanOut, List.of("Alice", "Bob"), 2).time;
+            assert (meeting.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 14)));
+            assert (calendars.calendarEntries("Bob").contains(meeting));
+            assert (schedule(calendars, fanOut, List.of("Alice", "Bob"), 2).time
+                    .equals(new ch08_SchedulingMeetingsImpure.MeetingTime(14, 16)));
+            assert (calls.get() == 2); // Alice and Bob were fetched once, for both meetings
+        }
+
+        now.set(Duration.ofMinutes(2).toMillis());
+        calendars.calendarEntries("Bob"); // expired
+        calendars.calendarEntries("Charlie"); // evicts Alice, the least recently used
+        calendars.calendarEntries("Alice");
+        var stats = calendars.stats();
+        assert (calls.get() == 5 && stats.expirations == 1 && stats.evictions == 2);
+        System.out.println("[cache] " + stats + "; loads: " + calendars.loadStats());
+    }
+}
+
+/**
+ * Calendar entries of at most maxEntries people (the least recently used ones are evicted), each cached for ttl.
+ * When many threads miss the same person at the same time, only one of them calls the api and all of them
+ * get its result (see SingleFlight).
+ * <p>
+ * createMeeting creates the meeting and adds it to cached calendars of all attendees (write-through).
+ * A calendar that was being fetched at that time may not include the new meeting, so it's returned, but not cached.
+ */
+class CachedCalendarApi implements CalendarApi {
+    private final CalendarApi api;
+    private final LongSupplier currentTimeMillis;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CachedCalendar> cache; // guarded by this, ordered from the least recently used
+    private final SingleFlight<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>> loads = new SingleFlight<>();
+    private final Map<String, Boolean> staleLoads = new HashMap<>(); // guarded by this, true when a meeting was created
+
+    private long hits, misses, loadFailures, evictions, expirations; // guarded by this
+
+    private static class CachedCalendar {
+        final List<ch08_SchedulingMeetingsImpure.MeetingTime> entries;
+        final long loadedAt;
+
+        CachedCalendar(List<ch08_SchedulingMeetingsImpure.MeetingTime> entries, long loadedAt) {
+            this.entries = entries;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public CachedCalendarApi(CalendarApi api, int maxEntries, Duration ttl, LongSupplier currentTimeMillis) {
+        this.api = api;
+        this.currentTimeMillis = currentTimeMillis;
+        this.ttlMillis = ttl.toMillis();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCalendar> eldest) {
+                var evict = size() > maxEntries;
+                if (evict) evictions++;
+                return evict;
+            }
+        };
+    }
+
+    public List<ch08_SchedulingMeetingsImpure.MeetingTime> calendarEntries(String name) {
+        synchronized (this) {
+            var cached = cache.get(name);
+            if (cached != null && currentTimeMillis.getAsLong() - cached.loadedAt < ttlMillis) {
+                hits++;
+                return cached.entries;
+            }
+            misses++;
+            if (cached != null) {
+                expirations++;
+                cache.remove(name);
+            }
+        }
+        return loads.call(name, this::load);
+    }
+
+    /**
+     * Called by one thread at a time for each name.
+     */
+    private List<ch08_SchedulingMeetingsImpure.MeetingTime> load(String name) {
+        synchronized (this) {
+            var cached = cache.get(name); // loaded by the previous flight, after this thread missed it
+            if (cached != null && currentTimeMillis.getAsLong() - cached.loadedAt < ttlMillis) return cached.entries;
+            staleLoads.put(name, false);
+        }
+        var loadedAt = currentTimeMillis.getAsLong();
+        try {
+            var entries = api.calendarEntries(name);
+            synchronized (this) {
+                if (!staleLoads.remove(name)) cache.put(name, new CachedCalendar(entries, loadedAt));
+            }
+            return entries;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                staleLoads.remove(name);
+                loadFailures++;
+            }
+            throw e;
+        }
+    }
+
+    public void createMeeting(List<String> names, ch08_SchedulingMeetingsImpure.MeetingTime meetingTime) {
+        ch08_SchedulingMeetingsImpure.createMeetingApiCall(names, meetingTime);
+        synchronized (this) {
+            for (var name : names) {
+                var cached = cache.get(name);
+                if (cached != null) {
+                    var entries = new ArrayList<>(cached.entries);
+                    entries.add(meetingTime);
+                    cache.put(name, new CachedCalendar(List.copyOf(entries), cached.loadedAt));
+                }
+                staleLoads.replace(name, true);
+            }
+        }
+    }
+
+    public SingleFlightStats loadStats() {
+        return loads.stats();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, loadFailures, evictions, expirations, cache.size());
+    }
+}
+
+class CacheStats {
+    public final long hits;
+    public final long misses;
+    public final long loadFailures;
+    public final long evictions;
+    public final long expirations;
+    public final int size;
+
+    public CacheStats(long hits, long misses, long loadFailures, long evictions, long expirations, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loadFailures = loadFailures;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+    }
+
+    public double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (hit rate %.0f%%), %d load failures, %d evictions, %d expirations, "
+                + "%d cached", hits, misses, hitRate() * 100, loadFailures, evictions, expirations, size);
+    }
+}
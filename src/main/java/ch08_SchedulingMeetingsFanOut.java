@@ -0,0 +1,79 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * schedule from ch08_SchedulingMeetingsImpure fetches calendars one after another, so it takes as long as all calls
+ * together, and a single slow call makes the whole scheduling slow. Here, all calendars are fetched at the same time,
+ * failed calls are retried immediately, and calls that take longer than usual get a second (hedged) request,
+ * so scheduling takes about as long as one typical call, no matter how many attendees there are.
+ */
+public class ch08_SchedulingMeetingsFanOut {
+    static MeetingSuggestion schedule(CalendarFanOut fanOut, List<String> attendees, int lengthHours) {
+        var suggestion = ch08_SchedulingMeetingsSweepLine.bestSlot(fanOut.calendarEntries(attendees), lengthHours, 8, 16);
+        if (suggestion != null) ch08_SchedulingMeetingsImpure.createMeetingApiCall(suggestion.available, suggestion.time);
+        return suggestion;
+    }
+
+    public static void main(String[] args) {
+        var api = new SimulatedCalendarApi(Duration.ofMillis(10), 0.03, Duration.ofMillis(200));
+        var attendees = new ArrayList<String>(List.of("Alice", "Bob"));
+        for (int i = 0; i < 48; i++) attendees.add("Attendee " + i);
+
+        var start = System.nanoTime();
+        for (var attendee : attendees) {
+            try { // sequential calls with one retry, as in ch08_SchedulingMeetingsImpure.schedule
+                api.calendarEntries(attendee);
+            } catch (Exception e) {
+                try {
+                    api.calendarEntries(attendee);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        var sequentialMillis = (System.nanoTime() - start) / 1_000_000;
+
+        try (var fanOut = new CalendarFanOut(api, 10, Duration.ofSeconds(1))) {
+            fanOut.calendarEntries(attendees); // warms up latency statistics used to hedge requests
+            start = System.nanoTime();
+            var calendars = fanOut.calendarEntries(attendees);
+            var fanOutMillis = (System.nanoTime() - start) / 1_000_000;
+            assert (calendars.keySet().equals(new LinkedHashSet<>(attendees)));
+            assert (calendars.get("Bob").equals(List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(9, 10))));
+            System.out.printf("[fan-out] %d calendars: %d ms one by one, %d ms at once (hedging after %d ms)\n",
+                    attendees.size(), sequentialMillis, fanOutMillis, fanOut.hedgeDelay().toMillis());
+
+            assert (schedule(fanOut, List.of("Alice", "Bob"), 2).time
+                    .equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 14)));
+        }
+    }
+}
+
+/**
+ * calendarEntriesApiCall (which fails 25% of the time) with network latency: most calls take about typicalLatency,
+ * but some take slowLatency.
+ */
+class SimulatedCalendarApi implements CalendarApi {
+    private final Duration typicalLatency;
+    private final double slowCallsFraction;
+    private final Duration slowLatency;
+
+    public SimulatedCalendarApi(Duration typicalLatency, double slowCallsFraction, Duration slowLatency) {
+        this.typicalLatency = typicalLatency;
+        this.slowCallsFraction = slowCallsFraction;
+        this.slowLatency = slowLatency;
+    }
+
+    public List<ch08_SchedulingMeetingsImpure.MeetingTime> calendarEntries(String name) {
+        var random = ThreadLocalRandom.current();
+        var latency = random.nextDouble() < slowCallsFraction ? slowLatency : typicalLatency;
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Call cancelled", e);
+        }
+        return ch08_SchedulingMeetingsImpure.calendarEntriesApiCall(name);
+    }
+}
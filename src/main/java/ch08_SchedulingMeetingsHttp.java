@@ -0,0 +1,437 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * *ApiCall functions simulate the calendar service in-process, so they don't show what talking to a real service costs:
+ * connections, serialization and network I/O. Here, the calendar service is a local HTTP server,
+ * it's called using HttpClient, and a load generator measures how many meetings can be scheduled per second
+ * and how long scheduling takes. Everything runs on the loopback interface.
+ */
+public class ch08_SchedulingMeetingsHttp {
+    /**
+     * Fetches calendars of all attendees, finds the best slot between 8 and 16,
+     * and creates the meeting for attendees that are available then.
+     */
+    static MeetingSuggestion schedule(CalendarFanOut fanOut, HttpCalendarApi api, List<String> attendees,
+                                      int lengthHours) {
+        var suggestion = ch08_SchedulingMeetingsSweepLine.bestSlot(fanOut.calendarEntries(attendees), lengthHours, 8, 16);
+        if (suggestion != null) api.createMeeting(suggestion.available, suggestion.time);
+        return suggestion;
+    }
+
+    public static void main(String[] args) {
+        var profile = new CalendarServerProfile(Duration.ofMillis(1), 0.01, Duration.ofMillis(50), 0.05);
+        try (var server = CalendarServer.start(profile);
+             var api = new HttpCalendarApi(server.uri(), 10, Duration.ofSeconds(1));
+             var fanOut = new CalendarFanOut(api, 10, Duration.ofSeconds(5))) {
+            assert (api.calendarEntries("Bob").equals(List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(9, 10))));
+            var meeting = schedule(fanOut, api, List.of("Alice", "Bob"), 2).time;
+            assert (meeting.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 14)));
+            assert (api.calendarEntries("Alice").contains(meeting)); // created on the server
+
+            for (var load : List.of(new SchedulingLoad(1, 10_000, Duration.ofSeconds(2)),
+                                    new SchedulingLoad(32, 10_000, Duration.ofSeconds(2)))) {
+                var report = load.run(fanOut, api);
+                System.out.printf("[http] %s: %s\n", load, report);
+                assert (report.scheduled > 0);
+            }
+        }
+    }
+}
+
+/**
+ * How the calendar server behaves: most requests take about typicalLatency, slowCallsFraction of them take
+ * slowLatency, and failureRate of them fail with 503 Service Unavailable.
+ */
+class CalendarServerProfile {
+    public final Duration typicalLatency;
+    public final double slowCallsFraction;
+    public final Duration slowLatency;
+    public final double failureRate;
+
+    public CalendarServerProfile(Duration typicalLatency, double slowCallsFraction, Duration slowLatency,
+                                 double failureRate) {
+        this.typicalLatency = typicalLatency;
+        this.slowCallsFraction = slowCallsFraction;
+        this.slowLatency = slowLatency;
+        this.failureRate = failureRate;
+    }
+}
+
+/**
+ * A calendar service on a random loopback port:
+ * <ul>
+ *     <li>GET /calendars/{name} returns calendar entries as JSON: [{"startHour":8,"endHour":10}, ...],</li>
+ *     <li>POST /meetings with {"names":["Alice","Bob"],"startHour":12,"endHour":14} adds the meeting
+ *     to calendars of all names.</li>
+ * </ul>
+ * Alice and Bob have the same meetings as in calendarEntriesApiCall, everyone else has 0-2 random meetings,
+ * always the same for the same name. Requests fail before doing anything, so all of them can be safely retried.
+ * Each request is handled in its own virtual thread.
+ */
+class CalendarServer implements AutoCloseable {
+    static {
+        // the server writes response headers and body separately, so without TCP_NODELAY each response with a body
+        // waits for the client's delayed ACK (40 ms on Linux); the property is read when the first server starts
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CalendarServerProfile profile;
+    private final Map<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>> calendars = new ConcurrentHashMap<>();
+
+    private CalendarServer(CalendarServerProfile profile) throws IOException {
+        this.profile = profile;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/calendars/", this::calendarEntries);
+        server.createContext("/meetings", this::createMeeting);
+        server.start();
+    }
+
+    public static CalendarServer start(CalendarServerProfile profile) {
+        try {
+            return new CalendarServer(profile);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't start the calendar server", e);
+        }
+    }
+
+    public URI uri() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    private void calendarEntries(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!simulateNetwork(exchange)) return;
+            var name = exchange.getRequestURI().getPath().substring("/calendars/".length());
+            var entries = calendars.getOrDefault(name, initialCalendar(name));
+            respond(exchange, 200, CalendarJson.meetingTimes(entries));
+        }
+    }
+
+    private void createMeeting(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "");
+                return;
+            }
+            if (!simulateNetwork(exchange)) return;
+            var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            var names = CalendarJson.parseNames(body);
+            var time = CalendarJson.parseMeetingTimes(body).get(0);
+            for (var name : names) {
+                calendars.compute(name, (n, entries) -> {
+                    var updated = new ArrayList<>(entries != null ? entries : initialCalendar(n));
+                    updated.add(time);
+                    return List.copyOf(updated);
+                });
+            }
+            respond(exchange, 201, "");
+        }
+    }
+
+    /**
+     * @return false when the request failed (and the response has already been sent)
+     */
+    private boolean simulateNetwork(HttpExchange exchange) throws IOException {
+        var random = ThreadLocalRandom.current();
+        var latency = random.nextDouble() < profile.slowCallsFraction ? profile.slowLatency : profile.typicalLatency;
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "");
+            return false;
+        }
+        if (random.nextDouble() < profile.failureRate) {
+            respond(exchange, 503, "");
+            return false;
+        }
+        return true;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) exchange.getResponseBody().write(bytes);
+    }
+
+    private static List<ch08_SchedulingMeetingsImpure.MeetingTime> initialCalendar(String name) {
+        if (name.equals("Alice")) {
+            return List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(8, 10),
+                           new ch08_SchedulingMeetingsImpure.MeetingTime(11, 12));
+        }
+        if (name.equals("Bob")) return List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(9, 10));
+        var random = new Random(name.hashCode());
+        var meetings = new ArrayList<ch08_SchedulingMeetingsImpure.MeetingTime>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            var start = 8 + random.nextInt(8);
+            meetings.add(new ch08_SchedulingMeetingsImpure.MeetingTime(start, start + 1));
+        }
+        return meetings;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
+
+/**
+ * The calendar service over HTTP, using one HttpClient that keeps connections open between requests.
+ * A request that fails with 503 is attempted again, at most maxAttempts times in total.
+ */
+class HttpCalendarApi implements CalendarApi, AutoCloseable {
+    private final URI server;
+    private final int maxAttempts;
+    private final Duration requestTimeout;
+    private final HttpClient client;
+
+    public HttpCalendarApi(URI server, int maxAttempts, Duration requestTimeout) {
+        this.server = server;
+        this.maxAttempts = maxAttempts;
+        this.requestTimeout = requestTimeout;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    public List<ch08_SchedulingMeetingsImpure.MeetingTime> calendarEntries(String name) {
+        var path = "/calendars/" + URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20");
+        var request = HttpRequest.newBuilder(server.resolve(path)).timeout(requestTimeout).GET().build();
+        return CalendarJson.parseMeetingTimes(send(request, 200));
+    }
+
+    public void createMeeting(List<String> names, ch08_SchedulingMeetingsImpure.MeetingTime meetingTime) {
+        var request = HttpRequest.newBuilder(server.resolve("/meetings"))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(CalendarJson.meeting(names, meetingTime)))
+                .build();
+        send(request, 201);
+    }
+
+    private String send(HttpRequest request, int expectedStatus) {
+        var status = 0;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            HttpResponse<String> response;
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                throw new RuntimeException("Connection error", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Call cancelled", e);
+            }
+            status = response.statusCode();
+            if (status == expectedStatus) return response.body();
+            if (status != 503) break;
+        }
+        throw new RuntimeException(request.method() + " " + request.uri() + " failed with " + status);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
+
+/**
+ * Just enough JSON for the calendar service: meeting times and names (which may contain any characters).
+ */
+class CalendarJson {
+    static String meetingTimes(List<ch08_SchedulingMeetingsImpure.MeetingTime> meetingTimes) {
+        var json = new StringBuilder("[");
+        for (var meetingTime : meetingTimes) {
+            if (json.length() > 1) json.append(',');
+            json.append("{\"startHour\":").append(meetingTime.startHour)
+                .append(",\"endHour\":").append(meetingTime.endHour).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    static String meeting(List<String> names, ch08_SchedulingMeetingsImpure.MeetingTime meetingTime) {
+        var json = new StringBuilder("{\"names\":[");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('"');
+            for (var c : names.get(i).toCharArray()) {
+                if (c == '"' || c == '\\') json.append('\\').append(c);
+                else if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                else json.append(c);
+            }
+            json.append('"');
+        }
+        return json.append("],\"startHour\":").append(meetingTime.startHour)
+                   .append(",\"endHour\":").append(meetingTime.endHour).append('}').toString();
+    }
+
+    /**
+     * All meeting times in the JSON, in order.
+     */
+    static List<ch08_SchedulingMeetingsImpure.MeetingTime> parseMeetingTimes(String json) {
+        var meetingTimes = new ArrayList<ch08_SchedulingMeetingsImpure.MeetingTime>();
+        var at = 0;
+        while ((at = json.indexOf("\"startHour\":", at)) >= 0) {
+            var startHour = parseInt(json, at + "\"startHour\":".length());
+            at = json.indexOf("\"endHour\":", at);
+            var endHour = parseInt(json, at + "\"endHour\":".length());
+            meetingTimes.add(new ch08_SchedulingMeetingsImpure.MeetingTime(startHour, endHour));
+        }
+        return meetingTimes;
+    }
+
+    static List<String> parseNames(String json) {
+        var names = new ArrayList<String>();
+        var at = json.indexOf("\"names\":[") + "\"names\":[".length();
+        while (json.charAt(at) == '"') {
+            var name = new StringBuilder();
+            for (at++; json.charAt(at) != '"'; at++) {
+                var c = json.charAt(at);
+                if (c != '\\') {
+                    name.append(c);
+                } else if (json.charAt(++at) == 'u') {
+                    name.append((char) Integer.parseInt(json.substring(at + 1, at + 5), 16));
+                    at += 4;
+                } else {
+                    name.append(json.charAt(at));
+                }
+            }
+            names.add(name.toString());
+            at++;
+            if (json.charAt(at) == ',') at++;
+        }
+        return names;
+    }
+
+    private static int parseInt(String json, int from) {
+        var to = from;
+        while (to < json.length() && Character.isDigit(json.charAt(to))) to++;
+        return Integer.parseInt(json, from, to, 10);
+    }
+}
+
+/**
+ * concurrency virtual threads scheduling meetings one after another for duration, each meeting with 2-5 attendees
+ * chosen from people.
+ */
+class SchedulingLoad {
+    public final int concurrency;
+    public final int people;
+    public final Duration duration;
+
+    public SchedulingLoad(int concurrency, int people, Duration duration) {
+        this.concurrency = concurrency;
+        this.people = people;
+        this.duration = duration;
+    }
+
+    public SchedulingReport run(CalendarFanOut fanOut, HttpCalendarApi api) {
+        var latencies = new ArrayList<long[]>();
+        var failed = new LongAdder();
+        var threads = new ArrayList<Thread>();
+        var start = System.nanoTime();
+        var deadline = start + duration.toNanos();
+        for (int i = 0; i < concurrency; i++) {
+            var threadLatencies = new long[1024];
+            var thread = Thread.ofVirtual().start(() -> {
+                var random = ThreadLocalRandom.current();
+                var recorded = threadLatencies;
+                var scheduled = 0;
+                while (System.nanoTime() < deadline) {
+                    var attendees = new ArrayList<String>();
+                    for (int j = 2 + random.nextInt(4); j > 0; j--) attendees.add("Person " + random.nextInt(people));
+                    var scheduleStart = System.nanoTime();
+                    try {
+                        ch08_SchedulingMeetingsHttp.schedule(fanOut, api, attendees, 1);
+                    } catch (RuntimeException e) {
+                        failed.increment();
+                        continue;
+                    }
+                    if (scheduled == recorded.length) recorded = Arrays.copyOf(recorded, scheduled * 2);
+                    recorded[scheduled++] = System.nanoTime() - scheduleStart;
+                }
+                synchronized (latencies) {
+                    latencies.add(Arrays.copyOf(recorded, scheduled));
+                }
+            });
+            threads.add(thread);
+        }
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        var elapsed = System.nanoTime() - start;
+        var all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new SchedulingReport(all, failed.sum(), elapsed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d concurrent schedulers, %d people, %d ms", concurrency, people, duration.toMillis());
+    }
+}
+
+class SchedulingReport {
+    public final long scheduled;
+    public final long failed;
+    public final long elapsedNanos;
+    private final long[] sortedLatencies;
+
+    public SchedulingReport(long[] sortedLatencies, long failed, long elapsedNanos) {
+        this.scheduled = sortedLatencies.length;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencies = sortedLatencies;
+    }
+
+    public double meetingsPerSecond() {
+        return scheduled * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Scheduling latency in milliseconds at the given percentile (0-100).
+     */
+    public double latencyMillis(double percentile) {
+        if (sortedLatencies.length == 0) return 0;
+        var index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.0f meetings/s, %d scheduled, %d failed (p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms)",
+                meetingsPerSecond(), scheduled, failed, latencyMillis(50), latencyMillis(99), latencyMillis(99.9));
+    }
+}
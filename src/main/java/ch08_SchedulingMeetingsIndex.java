@@ -0,0 +1,264 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Answering "when can this team meet?" again and again with schedule means going through all calendars each time.
+ * Here, availability of a team is kept in an index that is updated when a meeting is added,
+ * and answers the question without looking at calendars at all.
+ */
+public class ch08_SchedulingMeetingsIndex {
+    public static void main(String[] args) {
+        var week = new SlotGrid(5, 8, 16, 15);
+        var team = 30;
+        var index = new TeamAvailabilityIndex(week, team);
+        var busy = new int[week.slots()]; // the same information, kept naively to check the index
+        var memberBusy = new boolean[team][week.slots()];
+        var random = new Random(42);
+        for (int member = 0; member < team; member++) {
+            for (int day = 0; day < week.days; day++) {
+                var meetings = new ArrayList<ch08_SchedulingMeetingsImpure.MeetingTime>();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    var start = 8 + random.nextInt(8);
+                    meetings.add(new ch08_SchedulingMeetingsImpure.MeetingTime(start, start + 1 + random.nextInt(2)));
+                }
+                index.addCalendar(day, meetings);
+                for (int slot = 0; slot < week.slotsPerDay; slot++) {
+                    var minute = week.startMinute(slot);
+                    if (meetings.stream().anyMatch(m -> m.startHour * 60 <= minute && minute < m.endHour * 60)) {
+                        busy[week.slot(day, minute, false)]++;
+                        memberBusy[member][week.slot(day, minute, false)] = true;
+                    }
+                }
+            }
+        }
+
+        for (var conflicts = 0; conflicts <= team; conflicts += 3) {
+            for (var length = 1; length <= 16; length *= 2) {
+                assert (index.earliestSlot(length, conflicts) == earliestSlot(week, busy, length, conflicts));
+            }
+        }
+
+        var twoHours = 8;
+        var slot = index.earliestSlot(twoHours, 5);
+        System.out.printf("[index] Team of %d can meet for 2 hours with at most 5 people missing on day %d at %02d:%02d\n",
+                team, week.day(slot), week.startMinute(slot) / 60, week.startMinute(slot) % 60);
+
+        // the meeting is created for members that are free then, so the same time is not free anymore
+        var day = week.day(slot);
+        var startMinute = week.startMinute(slot);
+        var attendees = new ArrayList<Integer>();
+        for (int member = 0; member < team; member++) {
+            var free = true;
+            for (int i = slot; i < slot + twoHours; i++) free &= !memberBusy[member][i];
+            if (free) attendees.add(member);
+        }
+        for (var member : attendees) index.addMeeting(day, startMinute, startMinute + 120);
+        for (int i = slot; i < slot + twoHours; i++) busy[i] += attendees.size();
+        assert (index.earliestSlot(twoHours, 5) == earliestSlot(week, busy, twoHours, 5));
+        assert (index.earliestSlot(twoHours, 5) != slot);
+
+        // the meeting is cancelled, so the answer is the same as before it was created
+        for (var member : attendees) index.removeMeeting(day, startMinute, startMinute + 120);
+        for (int i = slot; i < slot + twoHours; i++) busy[i] -= attendees.size();
+        assert (index.earliestSlot(twoHours, 5) == slot);
+        assert (index.earliestSlot(twoHours, 5) == earliestSlot(week, busy, twoHours, 5));
+    }
+
+    private static int earliestSlot(SlotGrid grid, int[] busy, int lengthSlots, int maxConflicts) {
+        for (int day = 0; day < grid.days; day++) {
+            var run = 0;
+            for (int slotOfDay = 0; slotOfDay < grid.slotsPerDay; slotOfDay++) {
+                var slot = grid.slot(day, grid.startMinute(slotOfDay), false);
+                run = busy[slot] <= maxConflicts ? run + 1 : 0;
+                if (run == lengthSlots) return slot - lengthSlots + 1;
+            }
+        }
+        return -1;
+    }
+}
+
+/**
+ * Number of busy team members in each slot of a SlotGrid, in a segment tree. For each threshold t (0 to team size),
+ * each node knows its longest run of slots with at most t busy members, and the runs at its start and end,
+ * so the earliest run of length L with at most t busy members can be found by going down one path of the tree.
+ * <p>
+ * Adding a meeting to all slots of a node doesn't change its runs, it only moves them by one threshold
+ * (slots that had at most t busy members now have at most t + 1), so whole nodes are updated lazily:
+ * adding a meeting takes O(team size * log slots), and finding a slot takes O(log slots).
+ * <p>
+ * Gap slots between days have more busy members than the team, so no run goes through them.
+ */
+class TeamAvailabilityIndex {
+    private final SlotGrid grid;
+    private final int thresholds;
+    private final int slots;
+    private final int[] prefix; // [node * thresholds + t]: free slots at the start of the node
+    private final int[] suffix;
+    private final int[] longest;
+    private final int[] pending; // busy members added to the whole node, not pushed to its children yet
+
+    public TeamAvailabilityIndex(SlotGrid grid, int members) {
+        this.grid = grid;
+        this.thresholds = members + 1;
+        this.slots = grid.slots();
+        var nodes = 4 * slots;
+        prefix = new int[nodes * thresholds];
+        suffix = new int[nodes * thresholds];
+        longest = new int[nodes * thresholds];
+        pending = new int[nodes];
+        build(1, 0, slots - 1);
+    }
+
+    /**
+     * Adds all meetings of one member. Overlapping meetings are merged, so that the member is counted once.
+     */
+    public void addCalendar(int day, List<ch08_SchedulingMeetingsImpure.MeetingTime> meetings) {
+        var sorted = new ArrayList<>(meetings);
+        sorted.sort(Comparator.comparingInt(meeting -> meeting.startHour));
+        var start = -1;
+        var end = -1;
+        for (var meeting : sorted) {
+            if (meeting.startHour > end) {
+                if (end > start) addMeeting(day, start * 60, end * 60);
+                start = meeting.startHour;
+            }
+            end = Math.max(end, meeting.endHour);
+        }
+        if (end > start) addMeeting(day, start * 60, end * 60);
+    }
+
+    /**
+     * Adds a meeting of one member. The member shouldn't have any other meeting at that time.
+     */
+    public void addMeeting(int day, int startMinuteOfDay, int endMinuteOfDay) {
+        update(day, startMinuteOfDay, endMinuteOfDay, 1);
+    }
+
+    public void removeMeeting(int day, int startMinuteOfDay, int endMinuteOfDay) {
+        update(day, startMinuteOfDay, endMinuteOfDay, -1);
+    }
+
+    /**
+     * @return the first slot of the earliest lengthSlots slots in a row that have at most maxConflicts busy members
+     * each, or -1
+     */
+    public int earliestSlot(int lengthSlots, int maxConflicts) {
+        var threshold = Math.min(maxConflicts, thresholds - 1);
+        if (longest[runIndex(1, threshold)] < lengthSlots) return -1;
+        int node = 1, from = 0, to = slots - 1;
+        while (from < to) {
+            push(node, from, to);
+            var middle = (from + to) >>> 1;
+            var left = 2 * node;
+            var right = left + 1;
+            if (longest[runIndex(left, threshold)] >= lengthSlots) {
+                node = left;
+                to = middle;
+            } else if (suffix[runIndex(left, threshold)] + prefix[runIndex(right, threshold)] >= lengthSlots) {
+                return middle + 1 - suffix[runIndex(left, threshold)];
+            } else {
+                node = right;
+                from = middle + 1;
+            }
+        }
+        return from;
+    }
+
+    private void update(int day, int startMinuteOfDay, int endMinuteOfDay, int members) {
+        var from = grid.slot(day, startMinuteOfDay, false);
+        var to = grid.slot(day, endMinuteOfDay, true) - 1;
+        if (from <= to) update(1, 0, slots - 1, from, to, members);
+    }
+
+    private void build(int node, int from, int to) {
+        if (from == to) {
+            var gap = from % (grid.slotsPerDay + 1) == grid.slotsPerDay;
+            setLeaf(node, gap ? thresholds : 0);
+            return;
+        }
+        var middle = (from + to) >>> 1;
+        build(2 * node, from, middle);
+        build(2 * node + 1, middle + 1, to);
+        merge(node, middle - from + 1, to - middle);
+    }
+
+    private void update(int node, int from, int to, int updateFrom, int updateTo, int members) {
+        if (updateTo < from || to < updateFrom) return;
+        if (updateFrom <= from && to <= updateTo) {
+            apply(node, to - from + 1, members);
+            return;
+        }
+        push(node, from, to);
+        var middle = (from + to) >>> 1;
+        update(2 * node, from, middle, updateFrom, updateTo, members);
+        update(2 * node + 1, middle + 1, to, updateFrom, updateTo, members);
+        merge(node, middle - from + 1, to - middle);
+    }
+
+    private void setLeaf(int node, int busyMembers) {
+        for (int threshold = 0; threshold < thresholds; threshold++) {
+            var free = busyMembers <= threshold ? 1 : 0;
+            prefix[runIndex(node, threshold)] = free;
+            suffix[runIndex(node, threshold)] = free;
+            longest[runIndex(node, threshold)] = free;
+        }
+    }
+
+    /**
+     * Each slot of the node now has that many more busy members (or fewer, when negative),
+     * so runs of threshold t are now runs of threshold t + members. Runs of thresholds below members disappear,
+     * and when members are removed, runs of the highest thresholds cover the whole node.
+     */
+    private void apply(int node, int length, int members) {
+        pending[node] += members;
+        shift(prefix, node, length, members);
+        shift(suffix, node, length, members);
+        shift(longest, node, length, members);
+    }
+
+    private void shift(int[] runs, int node, int length, int members) {
+        var base = node * thresholds;
+        if (members > 0) {
+            for (int threshold = thresholds - 1; threshold >= 0; threshold--) {
+                runs[base + threshold] = threshold >= members ? runs[base + threshold - members] : 0;
+            }
+        } else {
+            for (int threshold = 0; threshold < thresholds; threshold++) {
+                runs[base + threshold] = threshold - members < thresholds ? runs[base + threshold - members] : length;
+            }
+        }
+    }
+
+    private void push(int node, int from, int to) {
+        if (pending[node] == 0) return;
+        var middle = (from + to) >>> 1;
+        apply(2 * node, middle - from + 1, pending[node]);
+        apply(2 * node + 1, to - middle, pending[node]);
+        pending[node] = 0;
+    }
+
+    private void merge(int node, int leftLength, int rightLength) {
+        var left = 2 * node;
+        var right = left + 1;
+        for (int threshold = 0; threshold < thresholds; threshold++) {
+            var leftRuns = runIndex(left, threshold);
+            var rightRuns = runIndex(right, threshold);
+            var nodeRuns = runIndex(node, threshold);
+            var leftPrefix = prefix[leftRuns];
+            var rightSuffix = suffix[rightRuns];
+            prefix[nodeRuns] = leftPrefix == leftLength ? leftLength + prefix[rightRuns] : leftPrefix;
+            suffix[nodeRuns] = rightSuffix == rightLength ? rightLength + suffix[leftRuns] : rightSuffix;
+            longest[nodeRuns] = Math.max(Math.max(longest[leftRuns], longest[rightRuns]),
+                    suffix[leftRuns] + prefix[rightRuns]);
+        }
+    }
+
+    /**
+     * Runs of all thresholds of a node are next to each other in prefix, suffix and longest.
+     */
+    private int runIndex(int node, int threshold) {
+        return node * thresholds + threshold;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * schedule from ch08_SchedulingMeetingsImpure works for exactly two people and checks every slot against every meeting.
+ * Here, calendars of any number of attendees are merged in one sweep over sorted times,
+ * and when no slot is free for everyone, the slot that most attendees can attend is chosen.
+ */
+public class ch08_SchedulingMeetingsSweepLine {
+    /**
+     * Fetches calendars of all attendees, finds the best slot between 8 and 16,
+     * and creates the meeting for attendees that are available then.
+     */
+    static MeetingSuggestion schedule(List<String> attendees, int lengthHours,
+                                      Function<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>> calendarEntries) {
+        var calendars = new LinkedHashMap<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>>();
+        for (var attendee : attendees) calendars.put(attendee, calendarEntries.apply(attendee));
+        var suggestion = bestSlot(calendars, lengthHours, 8, 16);
+        if (suggestion != null) ch08_SchedulingMeetingsImpure.createMeetingApiCall(suggestion.available, suggestion.time);
+        return suggestion;
+    }
+
+    /**
+     * Each attendee can start the meeting anywhere within [gapStart, gapEnd - length] of each free gap
+     * that is long enough. These ranges don't overlap, so the number of attendees that can attend a meeting
+     * starting at hour h is the number of ranges that contain h: ranges that started at or before h
+     * minus ranges that ended at or before h. It can only grow at range starts, so only they need to be checked,
+     * in one pass over sorted starts and ends: O(total entries * log(total entries)).
+     *
+     * @return the earliest slot that all attendees can attend or, if there is none,
+     * the earliest slot with the most attendees (null if the meeting doesn't fit in the working day at all)
+     */
+    static MeetingSuggestion bestSlot(Map<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>> calendars,
+                                      int lengthHours, int dayStartHour, int dayEndHour) {
+        var starts = new int[16];
+        var ends = new int[16];
+        var ranges = 0;
+        for (var entries : calendars.values()) {
+            var meetings = new ArrayList<>(entries);
+            meetings.sort(Comparator.comparingInt(meeting -> meeting.startHour));
+            var free = dayStartHour;
+            for (int i = 0; i <= meetings.size(); i++) {
+                var busy = i < meetings.size() ? Math.min(meetings.get(i).startHour, dayEndHour) : dayEndHour;
+                if (busy - free >= lengthHours) {
+                    if (ranges == starts.length) {
+                        starts = Arrays.copyOf(starts, ranges * 2);
+                        ends = Arrays.copyOf(ends, ranges * 2);
+                    }
+                    starts[ranges] = free;
+                    ends[ranges] = busy - lengthHours + 1; // exclusive
+                    ranges++;
+                }
+                if (i < meetings.size()) free = Math.max(free, meetings.get(i).endHour);
+            }
+        }
+        Arrays.sort(starts, 0, ranges);
+        Arrays.sort(ends, 0, ranges);
+
+        var bestStart = -1;
+        var bestAttendance = 0;
+        var ended = 0;
+        for (int started = 0; started < ranges; started++) {
+            var start = starts[started];
+            if (started + 1 < ranges && starts[started + 1] == start) continue; // count all ranges starting here
+            while (ended < ranges && ends[ended] <= start) ended++;
+            var attendance = started + 1 - ended;
+            if (attendance > bestAttendance) {
+                bestStart = start;
+                bestAttendance = attendance;
+                if (attendance == calendars.size()) break;
+            }
+        }
+        if (bestStart < 0) return null;
+
+        var time = new ch08_SchedulingMeetingsImpure.MeetingTime(bestStart, bestStart + lengthHours);
+        var available = new ArrayList<String>();
+        var unavailable = new ArrayList<String>();
+        calendars.forEach((attendee, entries) -> {
+            var busy = entries.stream().anyMatch(meeting ->
+                    time.endHour > meeting.startHour && meeting.endHour > time.startHour);
+            (busy ? unavailable : available).add(attendee);
+        });
+        return new MeetingSuggestion(time, available, unavailable);
+    }
+
+    private static List<ch08_SchedulingMeetingsImpure.MeetingTime> calendarEntriesWithRetries(String name) {
+        RuntimeException error = null;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            try {
+                return ch08_SchedulingMeetingsImpure.calendarEntriesApiCall(name);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        throw error;
+    }
+
+    public static void main(String[] args) {
+        var alice = List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(8, 10),
+                new ch08_SchedulingMeetingsImpure.MeetingTime(11, 12));
+        var bob = List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(9, 10));
+        var charlie = List.of(new ch08_SchedulingMeetingsImpure.MeetingTime(10, 14));
+        var aliceAndBob = new LinkedHashMap<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>>();
+        aliceAndBob.put("Alice", alice);
+        aliceAndBob.put("Bob", bob);
+        assert (bestSlot(aliceAndBob, 1, 8, 16).time.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(10, 11)));
+        assert (bestSlot(aliceAndBob, 2, 8, 16).time.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 14)));
+        assert (bestSlot(aliceAndBob, 4, 8, 16).time.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 16)));
+        assert (bestSlot(aliceAndBob, 5, 8, 16).available.size() == 1); // no slot for both, but one of them is free
+        assert (bestSlot(aliceAndBob, 9, 8, 16) == null);
+
+        var everyone = new LinkedHashMap<>(aliceAndBob);
+        everyone.put("Charlie", charlie);
+        var bestForThree = bestSlot(everyone, 2, 8, 16);
+        assert (bestForThree.time.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(14, 16)));
+        var bestForThreeEarly = bestSlot(everyone, 2, 8, 14);
+        assert (bestForThreeEarly.time.equals(new ch08_SchedulingMeetingsImpure.MeetingTime(12, 14)));
+        assert (bestForThreeEarly.unavailable.equals(List.of("Charlie")));
+
+        // 5000 attendees with random calendars
+        var random = new Random(42);
+        var calendars = new LinkedHashMap<String, List<ch08_SchedulingMeetingsImpure.MeetingTime>>();
+        for (int i = 0; i < 5000; i++) {
+            var meetings = new ArrayList<ch08_SchedulingMeetingsImpure.MeetingTime>();
+            for (int j = 0; j < 3; j++) {
+                var start = 8 + random.nextInt(8);
+                meetings.add(new ch08_SchedulingMeetingsImpure.MeetingTime(start, start + 1 + random.nextInt(2)));
+            }
+            calendars.put("Attendee " + i, meetings);
+        }
+        var best = bestSlot(calendars, 1, 8, 16);
+        System.out.printf("[sweep line] Best slot for 5000 attendees: %s, %d can attend\n",
+                best.time, best.available.size());
+
+        schedule(List.of("Alice", "Bob", "Charlie"), 2, ch08_SchedulingMeetingsSweepLine::calendarEntriesWithRetries);
+    }
+}
@@ -0,0 +1,180 @@
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stream.generate(() -> exchangeRatesTableApiCall("USD")) calls the api for each element, so every consumer waits
+ * for the call and fails when it fails. Here, rate tables are refreshed in the background,
+ * and readers get the last good table right away, even when a refresh is running or failing.
+ */
+public class ch09_CurrencyExchangeCache {
+    public static void main(String[] args) {
+        var calls = new AtomicInteger(0);
+        var down = new AtomicBoolean(false);
+        Function<String, Map<String, BigDecimal>> api = currency -> {
+            calls.incrementAndGet();
+            if (down.get()) throw new RuntimeException("Connection error");
+            return ch09_CurrencyExchangeImpure.exchangeRatesTableApiCall(currency);
+        };
+        var now = new AtomicLong(0);
+        try (var cache = new RatesCache(api, Duration.ofMinutes(1), Duration.ofMinutes(5), 10, now::get)) {
+            assert (cache.currentRates("USD").isEmpty()); // nothing fetched yet, but the read doesn't wait
+            var rates = cache.refresh("USD").join();
+            assert (cache.currentRates("USD").equals(Optional.of(rates)));
+
+            // stale: still served, but refreshed in the background
+            down.set(true);
+            now.set(Duration.ofMinutes(2).toMillis());
+            var callsBefore = calls.get();
+            assert (cache.currentRates("USD").equals(Optional.of(rates)));
+            assert (cache.refresh("USD").handle((r, e) -> e != null).join());
+            assert (calls.get() >= callsBefore + 10);
+            assert (cache.currentRates("USD").equals(Optional.of(rates))); // the last good table
+
+            // too stale to be served
+            down.set(false);
+            now.set(Duration.ofMinutes(10).toMillis());
+            assert (cache.currentRates("USD").isEmpty());
+            cache.refresh("USD").join();
+            assert (cache.currentRates("USD").isPresent());
+        }
+
+        try (var cache = new RatesCache(ch09_CurrencyExchangeImpure::exchangeRatesTableApiCall,
+                Duration.ofMillis(10), Duration.ofSeconds(1), 3, System::currentTimeMillis)) {
+            cache.refresh("USD").join();
+            // unlike in ch09_Stream123s, this never throws and never waits for the api
+            var usdRates = Stream.generate(() -> cache.currentRates("USD")).flatMap(Optional::stream);
+            var start = System.nanoTime();
+            var tables = usdRates.limit(1_000_000).collect(Collectors.toSet());
+            var elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("[rates cache] 1M reads in %d ms, %d different tables\n", elapsedMillis, tables.size());
+        }
+    }
+}
+
+/**
+ * Exchange rate tables of currencies that were read at least once, refreshed in the background.
+ * <p>
+ * currentRates never calls the api: it returns the last table fetched successfully, if it's not older
+ * than maxStaleness. When the table is older than refreshInterval, a refresh is started in the background
+ * (stale-while-revalidate), and all tables are also refreshed every refreshInterval without any reads.
+ * A refresh calls the api at most maxAttempts times in a row, until it succeeds. There is at most one refresh
+ * of a currency at a time.
+ */
+class RatesCache implements AutoCloseable {
+    private final Function<String, Map<String, BigDecimal>> ratesApi;
+    private final long refreshIntervalMillis;
+    private final long maxStalenessMillis;
+    private final int maxAttempts;
+    private final LongSupplier currentTimeMillis;
+    private final Map<String, CachedRates> currencies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable ->
+            Thread.ofPlatform().name("rates-refresher").daemon().unstarted(runnable));
+
+    private static class RatesTable {
+        final Map<String, BigDecimal> rates;
+        final long fetchedAt;
+
+        RatesTable(Map<String, BigDecimal> rates, long fetchedAt) {
+            this.rates = rates;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static class CachedRates {
+        volatile RatesTable table; // null until the first successful refresh
+        final AtomicReference<CompletableFuture<Map<String, BigDecimal>>> refresh = new AtomicReference<>();
+    }
+
+    public RatesCache(Function<String, Map<String, BigDecimal>> ratesApi, Duration refreshInterval,
+                      Duration maxStaleness, int maxAttempts, LongSupplier currentTimeMillis) {
+        this.ratesApi = ratesApi;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.maxAttempts = maxAttempts;
+        this.currentTimeMillis = currentTimeMillis;
+        refresher.scheduleWithFixedDelay(this::refreshAll, refreshIntervalMillis, refreshIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the last rates of the currency that are at most maxStaleness old, or empty,
+     * when there are none (yet). Doesn't wait for anything.
+     */
+    public Optional<Map<String, BigDecimal>> currentRates(String currency) {
+        var cached = currencies.get(currency);
+        if (cached == null) {
+            refresh(currency);
+            return Optional.empty();
+        }
+        var table = cached.table;
+        var age = table == null ? Long.MAX_VALUE : currentTimeMillis.getAsLong() - table.fetchedAt;
+        if (age >= refreshIntervalMillis) refresh(currency);
+        return age <= maxStalenessMillis ? Optional.of(table.rates) : Optional.empty();
+    }
+
+    /**
+     * Starts refreshing the currency in the background (or returns the refresh that's already running).
+     */
+    public CompletableFuture<Map<String, BigDecimal>> refresh(String currency) {
+        var cached = currencies.computeIfAbsent(currency, c -> new CachedRates());
+        var refresh = new CompletableFuture<Map<String, BigDecimal>>();
+        if (!cached.refresh.compareAndSet(null, refresh)) {
+            var running = cached.refresh.get();
+            if (running != null) return running;
+            return refresh(currency); // it's just finished
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    var rates = fetch(currency);
+                    cached.table = new RatesTable(rates, currentTimeMillis.getAsLong());
+                    cached.refresh.set(null);
+                    refresh.complete(rates);
+                } catch (RuntimeException e) {
+                    cached.refresh.set(null);
+                    refresh.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) { // closed
+            cached.refresh.set(null);
+            refresh.completeExceptionally(e);
+        }
+        return refresh;
+    }
+
+    private Map<String, BigDecimal> fetch(String currency) {
+        RuntimeException error = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            try {
+                return Map.copyOf(ratesApi.apply(currency));
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        throw error;
+    }
+
+    private void refreshAll() {
+        for (var currency : currencies.keySet()) refresh(currency);
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
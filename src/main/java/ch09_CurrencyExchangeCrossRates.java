@@ -0,0 +1,175 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * exchangeRatesTableApiCall only returns rates from USD, so there is no way to exchange EUR to JPY directly,
+ * and a service that quotes rates from a few base currencies would need a call per base for each exchange.
+ * Here, rate tables of all base currencies are combined into rates between any two currencies
+ * (EUR -> USD -> JPY), computed once per refresh, so that any exchange is a single array lookup.
+ */
+public class ch09_CurrencyExchangeCrossRates {
+    /**
+     * Simulated rate tables from USD, EUR and GBP, quoted with 6 significant digits. Each base quotes only some
+     * of the currencies, so some rates need up to three exchanges. Currencies are "USD", "EUR", "GBP", "JPY",
+     * and made-up ones.
+     */
+    static Map<String, Map<String, BigDecimal>> simulatedBaseTables(List<String> currencies, Random random) {
+        var usdValue = new double[currencies.size()]; // how many USD one unit of the currency is worth
+        for (int i = 0; i < currencies.size(); i++) usdValue[i] = Math.exp(random.nextDouble(-8, 2));
+        usdValue[currencies.indexOf("USD")] = 1;
+        var tables = new LinkedHashMap<String, Map<String, BigDecimal>>();
+        for (var base : List.of("USD", "EUR", "GBP")) {
+            var baseIndex = currencies.indexOf(base);
+            var table = new LinkedHashMap<String, BigDecimal>();
+            for (int i = 0; i < currencies.size(); i++) {
+                var quoted = switch (base) {
+                    case "USD" -> i < currencies.size() / 2;
+                    case "EUR" -> i % 3 == 0 || i == currencies.indexOf("GBP");
+                    default -> i % 3 != 0;
+                };
+                if (quoted && i != baseIndex) {
+                    table.put(currencies.get(i), new BigDecimal(usdValue[baseIndex] / usdValue[i], new MathContext(6)));
+                }
+            }
+            tables.put(base, table);
+        }
+        return tables;
+    }
+
+    static List<String> currencies(int count) {
+        var currencies = new ArrayList<>(List.of("USD", "EUR", "GBP", "JPY"));
+        for (char first = 'A'; currencies.size() < count; first++) {
+            for (char second = 'A'; second <= 'Z' && currencies.size() < count; second++) {
+                currencies.add("X" + first + second);
+            }
+        }
+        return currencies;
+    }
+
+    public static void main(String[] args) {
+        // rates from USD only, like the ones from exchangeRatesTableApiCall
+        var crossRates = new CrossRates(List.of("USD", "EUR", "JPY"), 9);
+        crossRates.refresh(Map.of("USD", Map.of("EUR", new BigDecimal("0.81"), "JPY", new BigDecimal("103.25"))));
+        var rates = crossRates.current();
+        var usd = rates.currency("USD");
+        var eur = rates.currency("EUR");
+        var jpy = rates.currency("JPY");
+        // EUR -> USD -> JPY: 103.25 / 0.81 JPY for 1 EUR
+        assert (rates.rate(eur, jpy) == 127_469135802L);
+        assert (rates.exchange(100_00, 2, eur, jpy, 0, RoundingMode.HALF_EVEN) == 12747);
+        assert (rates.exchange(10325_00, 2, jpy, usd, 2, RoundingMode.HALF_EVEN) == 100_00);
+
+        // a refresh doesn't change tables that are being read
+        crossRates.refresh(Map.of("USD", Map.of("EUR", new BigDecimal("0.80"), "JPY", new BigDecimal("104.00"))));
+        assert (rates.exchange(100_00, 2, usd, jpy, 2, RoundingMode.HALF_EVEN) == 10325_00);
+        assert (crossRates.current().exchange(100_00, 2, usd, jpy, 2, RoundingMode.HALF_EVEN) == 10400_00);
+        assert (crossRates.current().rate(eur, jpy) == 130_000000000L);
+
+        // many currencies, quoted by a few base currencies
+        var currencies = currencies(160);
+        var baseTables = simulatedBaseTables(currencies, new Random(42));
+        var manyCrossRates = new CrossRates(currencies, 9);
+        var start = System.nanoTime();
+        for (int i = 0; i < 100; i++) manyCrossRates.refresh(baseTables);
+        var refreshMicros = (System.nanoTime() - start) / 100 / 1000;
+        for (int from = 0; from < currencies.size(); from++) {
+            for (int to = 0; to < currencies.size(); to++) assert (manyCrossRates.current().hasRate(from, to));
+        }
+        System.out.printf("[cross rates] %d currencies, %d rates computed in %d us\n",
+                currencies.size(), currencies.size() * currencies.size(), refreshMicros);
+    }
+}
+
+/**
+ * Rates between any two of the currencies, computed from rate tables of a few base currencies.
+ * The rate from A to B is the product of rates along the shortest path of quotes from A to B,
+ * where a quote can be used in both directions (a rate from USD to EUR also gives the rate from EUR to USD).
+ * Each exchange rounds a little, so shorter paths are better, and rates quoted in the right direction
+ * are preferred to inverted ones. Products are computed with 34 significant digits, and rounded to scale
+ * when stored. Currencies that can't be reached have no rate.
+ * <p>
+ * Each refresh computes a new RateTable and swaps it in, so readers always see a complete, consistent table:
+ * to do more exchanges with the same rates, get current once.
+ */
+class CrossRates {
+    private final List<String> currencies;
+    private final RateTable empty;
+    private volatile RateTable current;
+
+    public CrossRates(List<String> currencies, int scale) {
+        this.currencies = List.copyOf(currencies);
+        this.empty = new RateTable(currencies, scale);
+        this.current = empty;
+    }
+
+    public RateTable current() {
+        return current;
+    }
+
+    /**
+     * Replaces all rates with rates computed from the given tables (base currency -> rates from it).
+     * Rates of unknown currencies are ignored.
+     */
+    public synchronized void refresh(Map<String, Map<String, BigDecimal>> baseTables) {
+        current = compute(baseTables);
+    }
+
+    private RateTable compute(Map<String, Map<String, BigDecimal>> baseTables) {
+        var n = currencies.size();
+        var edges = new ArrayList<List<Quote>>(n);
+        for (int i = 0; i < n; i++) edges.add(new ArrayList<>());
+        for (var inverted : List.of(false, true)) { // quoted directions first, so that BFS prefers them
+            baseTables.forEach((base, rates) -> {
+                var from = empty.currency(base);
+                if (from < 0) return;
+                rates.forEach((currency, rate) -> {
+                    var to = empty.currency(currency);
+                    if (to < 0 || to == from || rate.signum() <= 0) return;
+                    if (!inverted) edges.get(from).add(new Quote(to, rate));
+                    else edges.get(to).add(new Quote(from, BigDecimal.ONE.divide(rate, MathContext.DECIMAL128)));
+                });
+            });
+        }
+
+        var rates = new long[n * n];
+        var pathRates = new BigDecimal[n];
+        var queue = new ArrayDeque<Integer>();
+        for (int from = 0; from < n; from++) {
+            Arrays.fill(pathRates, null);
+            pathRates[from] = BigDecimal.ONE;
+            queue.add(from);
+            while (!queue.isEmpty()) {
+                var currency = queue.poll();
+                for (var quote : edges.get(currency)) {
+                    if (pathRates[quote.to] != null) continue;
+                    pathRates[quote.to] = pathRates[currency].multiply(quote.rate, MathContext.DECIMAL128);
+                    queue.add(quote.to);
+                }
+            }
+            for (int to = 0; to < n; to++) {
+                if (pathRates[to] != null) {
+                    rates[from * n + to] = FixedPoint.of(pathRates[to], empty.scale, RoundingMode.HALF_EVEN);
+                }
+            }
+        }
+        return new RateTable(empty, rates);
+    }
+
+    private static class Quote {
+        final int to;
+        final BigDecimal rate;
+
+        Quote(int to, BigDecimal rate) {
+            this.to = to;
+            this.rate = rate;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * exchangeRatesTableApiCall returns a new Map of BigDecimals for each call, and exchanging an amount
+ * with BigDecimal allocates new objects for each multiplication and rounding. Here, amounts and rates are longs
+ * with an explicit scale (1234.56 with scale 2 is 123456), rates are kept in an array indexed by currency pairs,
+ * and exchanging an amount doesn't allocate anything.
+ */
+public class ch09_CurrencyExchangeFixedPoint {
+    private static Map<String, BigDecimal> exchangeRatesWithRetries(String currency) {
+        RuntimeException error = null;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            try {
+                return ch09_CurrencyExchangeImpure.exchangeRatesTableApiCall(currency);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        throw error;
+    }
+
+    public static void main(String[] args) {
+        var usdRates = exchangeRatesWithRetries("USD");
+        var table = new RateTable(List.of("USD", "EUR", "JPY"), 6).withRates("USD", usdRates);
+        var usd = table.currency("USD");
+        var eur = table.currency("EUR");
+        var jpy = table.currency("JPY");
+
+        // the same results as BigDecimal, for all rounding modes
+        var random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            var amount = random.nextLong(-10_000_000_000L, 10_000_000_000L);
+            var rate = usdRates.get(i % 2 == 0 ? "EUR" : "JPY");
+            var to = i % 2 == 0 ? eur : jpy;
+            for (var mode : RoundingMode.values()) {
+                if (mode == RoundingMode.UNNECESSARY) continue;
+                var expected = BigDecimal.valueOf(amount, 2).multiply(rate).setScale(2, mode);
+                var exchanged = table.exchange(amount, 2, usd, to, 2, mode);
+                assert (FixedPoint.toBigDecimal(exchanged, 2).equals(expected));
+            }
+        }
+        assert (FixedPoint.divide(25, 10, RoundingMode.HALF_EVEN) == 2);
+        assert (FixedPoint.divide(-25, 10, RoundingMode.HALF_UP) == -3);
+        assert (FixedPoint.divide(-21, 10, RoundingMode.FLOOR) == -3);
+        assert (FixedPoint.divide(-21, 10, RoundingMode.CEILING) == -2);
+        // scales that differ by more than 18 still work (slower): 0.000001234567 * 1.5 is 0.00 or 0.01
+        for (var mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY) continue;
+            var expected = BigDecimal.valueOf(1_234_567, 12).multiply(BigDecimal.valueOf(1_500_000_000, 9))
+                    .setScale(2, mode);
+            assert (FixedPoint.toBigDecimal(FixedPoint.multiply(1_234_567, 12, 1_500_000_000, 9, 2, mode), 2)
+                    .equals(expected));
+        }
+        // amounts that overflow long when multiplied by the rate still work (slower)
+        var huge = Long.MAX_VALUE / 10;
+        assert (FixedPoint.toBigDecimal(table.exchange(huge, 2, usd, eur, 0, RoundingMode.DOWN), 0)
+                .equals(BigDecimal.valueOf(huge, 2).multiply(usdRates.get("EUR")).setScale(0, RoundingMode.DOWN)));
+
+        var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) total += table.exchange(i, 2, usd, eur, 2, RoundingMode.HALF_EVEN); // warm-up
+        var allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) total += table.exchange(i, 2, usd, eur, 2, RoundingMode.HALF_EVEN);
+        var allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        assert (allocated < 1024); // nothing per conversion (the counter itself may allocate a little)
+        System.out.printf("[fixed point] 1M conversions USD -> EUR allocated %d bytes (total %s EUR)\n",
+                allocated, FixedPoint.toString(total, 2));
+    }
+}
@@ -0,0 +1,465 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * ch09_Stream123s turns exchangeRatesTableApiCall into an infinite stream of tables, but all past rates are lost,
+ * so checking a trend means calling the api again and again. Here, every rate of every currency pair is kept
+ * in memory, compressed the way Facebook's Gorilla compresses time series: timestamps as differences
+ * between consecutive intervals and rates as XORs with the previous rate. A tick takes a few bytes instead of
+ * a boxed Map of BigDecimals.
+ */
+public class ch09_CurrencyExchangeHistory {
+    public static void main(String[] args) {
+        var store = new RateHistoryStore(6);
+
+        // the same stream as in ch09_Stream123s, but failed calls are skipped and all rates are kept
+        var start = 1_600_000_000_000L;
+        var tick = new long[]{start};
+        Stream.generate(() -> {
+                    try {
+                        return ch09_CurrencyExchangeImpure.exchangeRatesTableApiCall("USD");
+                    } catch (RuntimeException e) {
+                        return Map.<String, BigDecimal>of();
+                    }
+                })
+                .limit(1000)
+                .forEach(rates -> store.record(tick[0] += 1000, "USD", rates));
+        var usdEur = store.history("USD", "EUR");
+        assert (usdEur.size() > 600 && usdEur.size() == store.history("USD", "JPY").size());
+        assert (FixedPoint.toBigDecimal(usdEur.stats(start, tick[0]).max, 6).compareTo(new BigDecimal("0.9")) < 0);
+
+        // a month of ticks every second (with jitter) of a random walk, compared with plain arrays
+        var random = new Random(42);
+        var history = new RateHistory(6);
+        var ticks = 30 * 24 * 3600;
+        var timestamps = new long[ticks];
+        var rates = new long[ticks];
+        long time = start, rate = 810_000;
+        for (int i = 0; i < ticks; i++) {
+            time += 1000 + random.nextInt(-20, 21);
+            rate += random.nextInt(-30, 31);
+            timestamps[i] = time;
+            rates[i] = rate;
+            history.append(time, rate);
+        }
+        var decoded = new int[]{0};
+        history.scan(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> {
+            assert (timestamp == timestamps[decoded[0]] && value == rates[decoded[0]]);
+            decoded[0]++;
+        });
+        assert (decoded[0] == ticks);
+
+        var from = timestamps[1000];
+        var to = timestamps[500_000];
+        var expected = Arrays.stream(rates, 1000, 500_001).summaryStatistics();
+        var stats = history.stats(from, to);
+        assert (stats.count == expected.getCount() && stats.min == expected.getMin() && stats.max == expected.getMax());
+        assert (Math.abs(stats.mean - expected.getAverage()) < 1e-6);
+        var daily = history.windows(start, time, 24 * 3600 * 1000L);
+        assert (daily.size() == 30 && daily.stream().mapToLong(window -> window.count).sum() == ticks);
+        assert (history.trendingUp(100) == (slope(rates, ticks - 100) > 0));
+
+        var scanStart = System.nanoTime();
+        var weekStats = history.stats(timestamps[100_000], timestamps[100_000 + 7 * 24 * 3600]);
+        var scanMicros = (System.nanoTime() - scanStart) / 1000;
+        System.out.printf("[rate history] %d ticks in %.1f MB (%.2f bytes per tick, %.1f MB as two long arrays), "
+                        + "a week of stats (%d ticks) in %d us\n",
+                ticks, history.compressedBytes() / 1e6, (double) history.compressedBytes() / ticks,
+                ticks * 16 / 1e6, weekStats.count, scanMicros);
+    }
+
+    private static double slope(long[] values, int from) {
+        var n = values.length - from;
+        double meanX = (n - 1) / 2.0, meanY = 0;
+        for (int i = from; i < values.length; i++) meanY += (double) values[i] / n;
+        double covariance = 0, variance = 0;
+        for (int i = 0; i < n; i++) {
+            covariance += (i - meanX) * (values[from + i] - meanY);
+            variance += (i - meanX) * (i - meanX);
+        }
+        return covariance / variance;
+    }
+}
+
+/**
+ * Receives decoded ticks, without boxing them.
+ */
+interface RateTickConsumer {
+    void accept(long timestamp, long unscaledRate);
+}
+
+/**
+ * Rate histories of all currency pairs, with rates as unscaled longs with the given scale (see FixedPoint).
+ */
+class RateHistoryStore {
+    private final int scale;
+    private final Map<String, RateHistory> histories = new ConcurrentHashMap<>();
+
+    public RateHistoryStore(int scale) {
+        this.scale = scale;
+    }
+
+    public RateHistory history(String from, String to) {
+        return histories.computeIfAbsent(from + "/" + to, pair -> new RateHistory(scale));
+    }
+
+    /**
+     * Appends all rates of a table returned by exchangeRatesTableApiCall.
+     */
+    public void record(long timestamp, String from, Map<String, BigDecimal> rates) {
+        rates.forEach((to, rate) ->
+                history(from, to).append(timestamp, FixedPoint.of(rate, scale, RoundingMode.HALF_EVEN)));
+    }
+
+    public long compressedBytes() {
+        return histories.values().stream().mapToLong(RateHistory::compressedBytes).sum();
+    }
+}
+
+/**
+ * Ticks of one currency pair in append-only blocks of at most BLOCK_TICKS ticks.
+ * Each block knows its time range, minimum, maximum and sum, so statistics of blocks that are fully inside
+ * a time range are computed without decoding them, and scans decode only blocks that overlap the range.
+ * Ticks must be appended in time order. All methods are synchronized: one thread appends,
+ * many threads can read.
+ */
+class RateHistory {
+    static final int BLOCK_TICKS = 4096;
+
+    public final int scale;
+    private final List<RateBlock> blocks = new ArrayList<>(); // guarded by this
+
+    public RateHistory(int scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the tick is older than the last one
+     */
+    public synchronized void append(long timestamp, long unscaledRate) {
+        var last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (last != null && timestamp < last.lastTimestamp) {
+            throw new IllegalArgumentException("Tick at " + timestamp + " is older than the last one");
+        }
+        if (last == null || last.count == BLOCK_TICKS) {
+            if (last != null) last.seal();
+            last = new RateBlock(timestamp, unscaledRate);
+            blocks.add(last);
+        } else {
+            last.append(timestamp, unscaledRate);
+        }
+    }
+
+    public synchronized long size() {
+        return blocks.stream().mapToLong(block -> block.count).sum();
+    }
+
+    public synchronized long compressedBytes() {
+        return blocks.stream().mapToLong(RateBlock::compressedBytes).sum();
+    }
+
+    /**
+     * Passes ticks between from and to (inclusive) to consumer, in time order.
+     */
+    public synchronized void scan(long from, long to, RateTickConsumer consumer) {
+        for (int i = firstBlock(from); i < blocks.size() && blocks.get(i).firstTimestamp <= to; i++) {
+            blocks.get(i).decode((timestamp, rate) -> {
+                if (from <= timestamp && timestamp <= to) consumer.accept(timestamp, rate);
+            });
+        }
+    }
+
+    /**
+     * Statistics of ticks between from and to (inclusive).
+     */
+    public synchronized RateStats stats(long from, long to) {
+        var stats = new RateStatsBuilder();
+        for (int i = firstBlock(from); i < blocks.size() && blocks.get(i).firstTimestamp <= to; i++) {
+            var block = blocks.get(i);
+            if (from <= block.firstTimestamp && block.lastTimestamp <= to) {
+                stats.add(block.count, block.min, block.max, block.sum);
+            } else {
+                block.decode((timestamp, rate) -> {
+                    if (from <= timestamp && timestamp <= to) stats.add(1, rate, rate, rate);
+                });
+            }
+        }
+        return stats.build();
+    }
+
+    /**
+     * Statistics of consecutive windows of windowMillis, starting at from (the last one may be shorter).
+     */
+    public synchronized List<RateStats> windows(long from, long to, long windowMillis) {
+        var windows = new ArrayList<RateStats>();
+        for (var start = from; start <= to; start += windowMillis) {
+            windows.add(stats(start, Math.min(start + windowMillis - 1, to)));
+        }
+        return windows;
+    }
+
+    /**
+     * @return true when a straight line fitted to the last n ticks (by least squares) is going up
+     */
+    public synchronized boolean trendingUp(int n) {
+        var first = blocks.size();
+        var ticks = 0L;
+        while (first > 0 && ticks < n) ticks += blocks.get(--first).count;
+        var rates = new long[(int) ticks];
+        var decoded = new int[]{0};
+        for (int i = first; i < blocks.size(); i++) {
+            blocks.get(i).decode((timestamp, rate) -> rates[decoded[0]++] = rate);
+        }
+
+        var count = (int) Math.min(n, ticks);
+        var skip = rates.length - count;
+        double meanX = (count - 1) / 2.0, meanY = 0;
+        for (int i = 0; i < count; i++) meanY += (double) rates[skip + i] / count;
+        double covariance = 0;
+        for (int i = 0; i < count; i++) covariance += (i - meanX) * (rates[skip + i] - meanY);
+        return covariance > 0;
+    }
+
+    /**
+     * Index of the first block that may have ticks at from or later.
+     */
+    private int firstBlock(long from) {
+        int low = 0, high = blocks.size();
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (blocks.get(middle).lastTimestamp < from) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}
+
+/**
+ * Ticks compressed like in Gorilla (Pelkonen et al., VLDB 2015). The first tick is stored as is. After that:
+ * <ul>
+ *     <li>a timestamp is stored as the change of the interval between ticks (delta-of-delta): 1 bit when
+ *     ticks are regular, 9-16 bits when they are a little irregular, 68 bits otherwise,</li>
+ *     <li>a rate is stored as XOR with the previous rate: 1 bit when it didn't change, otherwise only its
+ *     meaningful bits (between leading and trailing zeros), with 2 bits of header when they fit
+ *     in the previous meaningful bits window, or 14 bits of header to set a new window.</li>
+ * </ul>
+ * Rates are unscaled fixed-point longs, so small changes of a rate flip only a few low bits.
+ */
+class RateBlock {
+    final long firstTimestamp;
+    long lastTimestamp;
+    int count;
+    long min, max, sum;
+
+    private final BitWriter bits = new BitWriter();
+    private long lastDelta = 0;
+    private long lastRate;
+    private int lastLeading = -1; // the meaningful bits window of the previous XOR
+    private int lastTrailing = 0;
+
+    RateBlock(long timestamp, long rate) {
+        firstTimestamp = lastTimestamp = timestamp;
+        min = max = sum = lastRate = rate;
+        count = 1;
+        bits.write(timestamp, 64);
+        bits.write(rate, 64);
+    }
+
+    void append(long timestamp, long rate) {
+        var delta = timestamp - lastTimestamp;
+        var deltaOfDelta = delta - lastDelta;
+        if (deltaOfDelta == 0) {
+            bits.write(0b0, 1);
+        } else if (-63 <= deltaOfDelta && deltaOfDelta <= 64) {
+            bits.write(0b10, 2);
+            bits.write(deltaOfDelta + 63, 7);
+        } else if (-255 <= deltaOfDelta && deltaOfDelta <= 256) {
+            bits.write(0b110, 3);
+            bits.write(deltaOfDelta + 255, 9);
+        } else if (-2047 <= deltaOfDelta && deltaOfDelta <= 2048) {
+            bits.write(0b1110, 4);
+            bits.write(deltaOfDelta + 2047, 12);
+        } else {
+            bits.write(0b1111, 4);
+            bits.write(deltaOfDelta, 64);
+        }
+
+        var xor = rate ^ lastRate;
+        if (xor == 0) {
+            bits.write(0b0, 1);
+        } else {
+            var leading = Long.numberOfLeadingZeros(xor);
+            var trailing = Long.numberOfTrailingZeros(xor);
+            if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+                bits.write(0b10, 2);
+                bits.write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+            } else {
+                var meaningful = 64 - leading - trailing;
+                bits.write(0b11, 2);
+                bits.write(leading, 6);
+                bits.write(meaningful - 1, 6);
+                bits.write(xor >>> trailing, meaningful);
+                lastLeading = leading;
+                lastTrailing = trailing;
+            }
+        }
+
+        lastDelta = delta;
+        lastTimestamp = timestamp;
+        lastRate = rate;
+        count++;
+        min = Math.min(min, rate);
+        max = Math.max(max, rate);
+        sum += rate;
+    }
+
+    void decode(RateTickConsumer consumer) {
+        var reader = bits.reader();
+        var timestamp = reader.read(64);
+        var rate = reader.read(64);
+        consumer.accept(timestamp, rate);
+        long delta = 0;
+        int leading = 0, trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (reader.read(1) == 1) {
+                if (reader.read(1) == 0) delta += reader.read(7) - 63;
+                else if (reader.read(1) == 0) delta += reader.read(9) - 255;
+                else if (reader.read(1) == 0) delta += reader.read(12) - 2047;
+                else delta += reader.read(64);
+            }
+            timestamp += delta;
+
+            if (reader.read(1) == 1) {
+                if (reader.read(1) == 1) {
+                    leading = (int) reader.read(6);
+                    var meaningful = (int) reader.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                rate ^= reader.read(64 - leading - trailing) << trailing;
+            }
+            consumer.accept(timestamp, rate);
+        }
+    }
+
+    /**
+     * Frees the unused end of the buffer, when no more ticks will be appended.
+     */
+    void seal() {
+        bits.trim();
+    }
+
+    long compressedBytes() {
+        return bits.capacityBytes() + 64; // the buffer and fields of the block
+    }
+}
+
+/**
+ * Bits appended to a growing array of longs, from the most significant bit of each long.
+ */
+class BitWriter {
+    private long[] words = new long[16];
+    private long size = 0;
+
+    /**
+     * Appends the lowest count bits of value (count between 1 and 64).
+     */
+    void write(long value, int count) {
+        if (count < 64) value &= (1L << count) - 1;
+        var index = (int) (size >>> 6);
+        var free = 64 - (int) (size & 63);
+        if (index + 1 >= words.length) words = Arrays.copyOf(words, words.length * 2);
+        if (count <= free) {
+            words[index] |= value << (free - count);
+        } else {
+            var rest = count - free;
+            words[index] |= value >>> rest;
+            words[index + 1] |= value << (64 - rest);
+        }
+        size += count;
+    }
+
+    void trim() {
+        words = Arrays.copyOf(words, (int) ((size + 63) >>> 6));
+    }
+
+    long capacityBytes() {
+        return words.length * 8L;
+    }
+
+    BitReader reader() {
+        return new BitReader(words);
+    }
+}
+
+class BitReader {
+    private final long[] words;
+    private long position = 0;
+
+    BitReader(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Reads the next count bits (between 1 and 64).
+     */
+    long read(int count) {
+        var index = (int) (position >>> 6);
+        var free = 64 - (int) (position & 63);
+        long value;
+        if (count <= free) {
+            value = words[index] >>> (free - count);
+        } else {
+            var rest = count - free;
+            value = (words[index] << rest) | (words[index + 1] >>> (64 - rest));
+        }
+        position += count;
+        return count < 64 ? value & ((1L << count) - 1) : value;
+    }
+}
+
+/**
+ * Number of ticks, and the minimum, maximum and mean of their unscaled rates (all 0 when there are no ticks).
+ */
+class RateStats {
+    public final long count;
+    public final long min;
+    public final long max;
+    public final double mean;
+
+    public RateStats(long count, long min, long max, double mean) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+    }
+
+    @Override
+    public String toString() {
+        return "RateStats[count=" + count + ", min=" + min + ", max=" + max + ", mean=" + mean + ']';
+    }
+}
+
+class RateStatsBuilder {
+    private long count = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private double sum = 0;
+
+    void add(long count, long min, long max, double sum) {
+        this.count += count;
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+        this.sum += sum;
+    }
+
+    RateStats build() {
+        return count == 0 ? new RateStats(0, 0, 0, 0) : new RateStats(count, min, max, sum / count);
+    }
+}
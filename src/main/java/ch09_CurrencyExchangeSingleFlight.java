@@ -0,0 +1,56 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * When many threads need rates of the same currency at the same time, each of them calls
+ * exchangeRatesTableApiCall, although one call would be enough. Here, threads that ask for the same currency
+ * while a call is in flight wait for that call and share its result (or its failure).
+ */
+public class ch09_CurrencyExchangeSingleFlight {
+    static Map<String, BigDecimal> slowExchangeRatesTableApiCall(String currency) {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Call cancelled", e);
+        }
+        return ch09_CurrencyExchangeImpure.exchangeRatesTableApiCall(currency);
+    }
+
+    public static void main(String[] args) throws Exception {
+        var calls = new AtomicInteger(0);
+        var rates = new SingleFlight<String, Map<String, BigDecimal>>();
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<Map<String, BigDecimal>>>();
+        try (var pricingThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 500; i++) {
+                results.add(pricingThreads.submit(() -> {
+                    start.await();
+                    return rates.call("USD", currency -> {
+                        calls.incrementAndGet();
+                        return slowExchangeRatesTableApiCall(currency);
+                    });
+                }));
+            }
+            start.countDown();
+        }
+
+        var stats = rates.stats();
+        var succeeded = 0;
+        for (var result : results) {
+            try {
+                result.get();
+                succeeded++;
+            } catch (Exception e) { // the whole flight failed: everybody in it gets the same error
+                assert (e.getCause().getMessage().equals("Connection error"));
+            }
+        }
+        assert (stats.calls == 500 && stats.loads == calls.get() && stats.loads + stats.coalesced == 500);
+        assert (stats.failures == 0 || succeeded < 500);
+        System.out.printf("[single-flight] %s, %d of 500 pricing threads got rates\n", stats, succeeded);
+    }
+}
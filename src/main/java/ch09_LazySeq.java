@@ -0,0 +1,296 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Java Streams can't be reused (see ch09_Stream123s), so a pipeline used twice is either computed twice
+ * or collected into a list first. LazySeq is closer to LazyList and fs2 streams from the Scala chapters:
+ * it's lazy, like a Stream, but each element is computed at most once and remembered, so it can be traversed
+ * again, also by many threads at the same time.
+ */
+public class ch09_LazySeq {
+    static LazySeq<Integer> oddNumbers(LazySeq<Integer> numbers) {
+        return numbers.filter(n -> n % 2 != 0);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LazySeq<Integer> numbers = LazySeq.of(1, 2, 3);
+        LazySeq<Integer> oddNumbers = oddNumbers(numbers);
+        assert (oddNumbers.toList().equals(List.of(1, 3)));
+        assert (numbers.stream().count() == 3); // possible, because we can reuse LazySeqs
+        assert (oddNumbers.toList().equals(List.of(1, 3)));
+
+        LazySeq<Integer> infiniteNumbers = LazySeq.iterate(0, i -> i + 1);
+        LazySeq<Integer> limited = oddNumbers(infiniteNumbers).take(3);
+        assert (limited.toList().equals(List.of(1, 3, 5)));
+        assert (oddNumbers(infiniteNumbers).map(n -> n * 10).take(3).toList().equals(List.of(10, 30, 50)));
+
+        // the same random numbers every time, because they are generated once
+        var random = new Random();
+        LazySeq<Integer> randomNumbers = oddNumbers(LazySeq.generate(random::nextInt)).take(3);
+        System.out.println(randomNumbers.toList());
+        assert (randomNumbers.toList().equals(randomNumbers.stream().toList()));
+
+        // a failed element is computed again when it's needed again; elements before it are remembered
+        var calls = new AtomicInteger();
+        LazySeq<Map<String, BigDecimal>> usdRates = LazySeq.generate(() -> {
+            calls.incrementAndGet();
+            return ch09_CurrencyExchangeImpure.exchangeRatesTableApiCall("USD");
+        }).take(10);
+        List<Map<String, BigDecimal>> tables = null;
+        for (int attempt = 1; tables == null && attempt <= 100; attempt++) {
+            try {
+                tables = usdRates.toList();
+            } catch (RuntimeException e) {
+                System.out.printf("[lazy seq] Attempt %d failed after %d calls: %s\n", attempt, calls.get(),
+                        e.getMessage());
+            }
+        }
+        if (tables != null) {
+            var callsNeeded = calls.get();
+            assert (usdRates.toList().equals(tables) && calls.get() == callsNeeded);
+            System.out.printf("[lazy seq] 10 tables after %d calls\n", callsNeeded);
+        }
+
+        // 8 threads traverse the same sequence, and each element is still computed once
+        var computed = new ConcurrentHashMap<Integer, Integer>();
+        LazySeq<Integer> squares = LazySeq.iterate(0, i -> i + 1).take(10_000).map(n -> {
+            computed.merge(n, 1, Integer::sum);
+            return n * n;
+        });
+        var sums = new ConcurrentHashMap<Integer, Long>();
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                executor.execute(() -> sums.put(thread, squares.stream().mapToLong(n -> n).sum()));
+            }
+        }
+        assert (sums.size() == 8 && sums.values().stream().allMatch(sum -> sum == 333_283_335_000L));
+        assert (computed.size() == 10_000 && computed.values().stream().allMatch(times -> times == 1));
+
+        // no reference to the first element is kept, so elements that were passed can be garbage collected
+        var start = System.nanoTime();
+        Iterator<Integer> odd = oddNumbers(LazySeq.iterate(0, i -> i + 1)).take(20_000_000).iterator();
+        long sum = 0;
+        while (odd.hasNext()) sum += odd.next();
+        assert (sum == 20_000_000L * 20_000_000L);
+        System.out.printf("[lazy seq] 20M odd numbers in %d ms\n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
+
+/**
+ * A lazy, possibly infinite, sequence of elements, which computes each element at most once, when it's needed,
+ * and remembers it. Elements are never null.
+ * <p>
+ * A LazySeq is a node that evaluates to either the end, or the first element and the rest of the sequence,
+ * which is another LazySeq. Threads that need a node at the same time wait for one of them to evaluate it.
+ * A node remembers its element and the rest, so everything computed after a node stays in memory as long as
+ * the node is referenced. Traversing with an iterator, without keeping the sequence itself, keeps only
+ * the elements that are still ahead of it.
+ * <p>
+ * When computing an element throws, the exception is passed to the caller, and the element is computed again
+ * the next time it's needed.
+ */
+final class LazySeq<T> implements Iterable<T> {
+    private static final Cell<?> END = new Cell<>();
+
+    private volatile Cell<T> cell; // null until evaluated
+    private Supplier<Cell<T>> evaluation; // guarded by this; null once evaluated or while evaluating
+
+    private LazySeq(Supplier<Cell<T>> evaluation) {
+        this.evaluation = evaluation;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> LazySeq<T> empty() {
+        return new LazySeq<>(() -> (Cell<T>) END);
+    }
+
+    /**
+     * The array is only read (its elements are copied, because the caller may change it later),
+     * so the method is safe for generic varargs.
+     */
+    @SafeVarargs
+    public static <T> LazySeq<T> of(T... elements) {
+        var copy = new ArrayList<T>(elements.length);
+        for (var element : elements) copy.add(Objects.requireNonNull(element, "LazySeq elements can't be null"));
+        return from(copy.iterator());
+    }
+
+    /**
+     * Elements of the iterator, which is only used by the sequence, one element at a time.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> LazySeq<T> from(Iterator<T> iterator) {
+        return new LazySeq<>(() -> iterator.hasNext()
+                ? new Cell<>(iterator.next(), from(iterator))
+                : (Cell<T>) END);
+    }
+
+    public static <T> LazySeq<T> iterate(T seed, UnaryOperator<T> next) {
+        return new LazySeq<>(() -> new Cell<>(seed, iterateAfter(seed, next)));
+    }
+
+    private static <T> LazySeq<T> iterateAfter(T previous, UnaryOperator<T> next) {
+        return new LazySeq<>(() -> {
+            var element = next.apply(previous);
+            return new Cell<>(element, iterateAfter(element, next));
+        });
+    }
+
+    public static <T> LazySeq<T> generate(Supplier<T> element) {
+        return new LazySeq<>(() -> new Cell<>(element.get(), generate(element)));
+    }
+
+    private Cell<T> force() {
+        var evaluated = cell;
+        if (evaluated != null) return evaluated;
+        synchronized (this) {
+            if (cell != null) return cell;
+            var evaluating = evaluation;
+            if (evaluating == null) throw new IllegalStateException("LazySeq depends on its own elements");
+            evaluation = null;
+            try {
+                cell = Objects.requireNonNull(evaluating.get(), "LazySeq evaluated to null");
+                return cell;
+            } catch (RuntimeException | Error e) {
+                evaluation = evaluating;
+                throw e;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return force() == END;
+    }
+
+    public T head() {
+        var evaluated = force();
+        if (evaluated == END) throw new NoSuchElementException("head of empty LazySeq");
+        return evaluated.head;
+    }
+
+    public LazySeq<T> tail() {
+        var evaluated = force();
+        if (evaluated == END) throw new UnsupportedOperationException("tail of empty LazySeq");
+        return evaluated.tail;
+    }
+
+    public LazySeq<T> filter(Predicate<? super T> predicate) {
+        return new LazySeq<>(new Filter<>(this, predicate));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> LazySeq<R> map(Function<? super T, ? extends R> f) {
+        return new LazySeq<>(() -> {
+            var evaluated = force();
+            return evaluated == END ? (Cell<R>) END : new Cell<>(f.apply(evaluated.head), evaluated.tail.map(f));
+        });
+    }
+
+    /**
+     * The first count elements. Nothing after them is computed.
+     */
+    @SuppressWarnings("unchecked")
+    public LazySeq<T> take(long count) {
+        if (count <= 0) return empty();
+        return new LazySeq<>(() -> {
+            var evaluated = force();
+            return evaluated == END ? (Cell<T>) END : new Cell<>(evaluated.head, evaluated.tail.take(count - 1));
+        });
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new LazySeqIterator<>(this);
+    }
+
+    public Stream<T> stream() {
+        var spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    public List<T> toList() {
+        var result = new ArrayList<T>();
+        iterator().forEachRemaining(result::add);
+        return List.copyOf(result);
+    }
+
+    private static final class Cell<T> {
+        final T head;
+        final LazySeq<T> tail;
+
+        Cell(T head, LazySeq<T> tail) {
+            this.head = Objects.requireNonNull(head, "LazySeq elements can't be null");
+            this.tail = tail;
+        }
+
+        private Cell() {
+            this.head = null;
+            this.tail = null;
+        }
+    }
+
+    /**
+     * Skips elements by moving its own reference forward, so skipped elements are not kept while
+     * a long run of them is tested.
+     */
+    private static final class Filter<T> implements Supplier<Cell<T>> {
+        private LazySeq<T> remaining;
+        private final Predicate<? super T> predicate;
+
+        Filter(LazySeq<T> remaining, Predicate<? super T> predicate) {
+            this.remaining = remaining;
+            this.predicate = predicate;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Cell<T> get() {
+            while (true) {
+                var evaluated = remaining.force();
+                if (evaluated == END) return (Cell<T>) END;
+                if (predicate.test(evaluated.head)) {
+                    return new Cell<>(evaluated.head, evaluated.tail.filter(predicate));
+                }
+                remaining = evaluated.tail;
+            }
+        }
+    }
+
+    private static final class LazySeqIterator<T> implements Iterator<T> {
+        private LazySeq<T> remaining;
+
+        LazySeqIterator(LazySeq<T> remaining) {
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !remaining.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            var element = remaining.head();
+            remaining = remaining.tail();
+            return element;
+        }
+    }
+}
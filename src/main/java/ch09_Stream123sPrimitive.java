@@ -0,0 +1,82 @@
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Streams from ch09_Stream123s hold Integers, so each number is boxed: an object is allocated and later
+ * unboxed again, which takes more time than filtering it. Here, the same pipelines use IntStream and LongStream,
+ * which hold ints and longs directly.
+ */
+public class ch09_Stream123sPrimitive {
+    static IntStream oddNumbers(IntStream numbers) {
+        return numbers.filter(n -> n % 2 != 0);
+    }
+
+    static LongStream oddNumbers(LongStream numbers) {
+        return numbers.filter(n -> n % 2 != 0);
+    }
+
+    /**
+     * The first count numbers of IntStream.iterate(0, i -> i + 1). Unlike iterate with limit,
+     * a range knows its size, so a parallel stream can split it between threads.
+     */
+    static IntStream naturalNumbers(int count) {
+        return IntStream.range(0, count);
+    }
+
+    public static void main(String[] args) {
+        IntStream numbers = IntStream.of(1, 2, 3);
+        List<Integer> result = oddNumbers(numbers).boxed().collect(Collectors.toList());
+        assert (result.equals(List.of(1, 3)));
+
+        IntStream infiniteNumbers = IntStream.iterate(0, i -> i + 1);
+        int[] limitedResult = oddNumbers(infiniteNumbers).limit(3).toArray();
+        assert (List.of(1, 3, 5).equals(IntStream.of(limitedResult).boxed().toList()));
+
+        IntStream randomNumbers = new Random().ints();
+        System.out.println(oddNumbers(randomNumbers).limit(3).boxed().toList());
+
+        // functions written for Stream<Integer> still work, boxing only inside them
+        var adapted = PrimitiveStreams.onInts(ch09_Stream123s::oddNumbers);
+        assert (List.of(1, 3, 5).equals(adapted.apply(IntStream.rangeClosed(1, 6)).boxed().toList()));
+
+        // the sum of the first 10 million odd numbers
+        var count = 10_000_000;
+        var start = System.nanoTime();
+        var boxed = ch09_Stream123s.oddNumbers(Stream.iterate(0, i -> i + 1)).limit(count)
+                .collect(Collectors.summingLong(Integer::longValue));
+        var boxedMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        var primitive = oddNumbers(IntStream.iterate(0, i -> i + 1)).limit(count).asLongStream().sum();
+        var primitiveMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        var parallel = oddNumbers(naturalNumbers(2 * count).parallel()).asLongStream().sum();
+        var parallelMillis = (System.nanoTime() - start) / 1_000_000;
+        assert (boxed == primitive && primitive == parallel && parallel == (long) count * count);
+        System.out.printf("[primitive streams] 10M odd numbers: %d ms boxed, %d ms primitive, %d ms parallel\n",
+                boxedMillis, primitiveMillis, parallelMillis);
+    }
+}
+
+/**
+ * Runs functions written for boxed streams as stages of primitive pipelines. Elements are boxed
+ * before the stage and unboxed after it, so the rest of the pipeline doesn't box.
+ * Hot stages are still worth rewriting for primitive streams.
+ */
+final class PrimitiveStreams {
+    private PrimitiveStreams() {
+    }
+
+    static UnaryOperator<IntStream> onInts(Function<Stream<Integer>, Stream<Integer>> stage) {
+        return numbers -> stage.apply(numbers.boxed()).mapToInt(Integer::intValue);
+    }
+
+    static UnaryOperator<LongStream> onLongs(Function<Stream<Long>, Stream<Long>> stage) {
+        return numbers -> stage.apply(numbers.boxed()).mapToLong(Long::longValue);
+    }
+}
@@ -0,0 +1,243 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stream.generate(() -> exchangeRatesTableApiCall("USD")) calls the api only when the next element is needed,
+ * so each element takes as long as a call, and the first failed call ends the whole stream with an exception.
+ * Here, calls are made ahead, in the background, and failed calls are retried or skipped, so the stream
+ * mostly finds its next element already there and keeps going after transient failures.
+ */
+public class ch09_StreamPrefetching {
+    static Map<String, BigDecimal> slowExchangeRatesTableApiCall() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Call cancelled", e);
+        }
+        return ch09_CurrencyExchangeImpure.exchangeRatesTableApiCall("USD");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        var start = System.nanoTime();
+        try {
+            Stream.generate(ch09_StreamPrefetching::slowExchangeRatesTableApiCall).limit(50).toList();
+            System.out.println("Most probably won't happen!");
+        } catch (RuntimeException e) {
+            System.out.printf("[prefetching] Generated stream failed after %d ms: %s\n",
+                    (System.nanoTime() - start) / 1_000_000, e.getMessage());
+        }
+
+        for (var policy : new FailurePolicy[]{FailurePolicy.retry(10), FailurePolicy.skip()}) {
+            start = System.nanoTime();
+            var source = new PrefetchingSource<>(ch09_StreamPrefetching::slowExchangeRatesTableApiCall, 8, policy);
+            try (var rates = source.stream()) {
+                assert (rates.limit(50).count() == 50);
+            }
+            var stats = source.stats();
+            assert (policy.skipWhenExhausted || stats.skipped == 0);
+            System.out.printf("[prefetching] %s: 50 tables in %d ms, %s\n",
+                    policy, (System.nanoTime() - start) / 1_000_000, stats);
+        }
+
+        try (var source = new PrefetchingSource<String>(() -> {
+            throw new RuntimeException("Rate not available");
+        }, 4, FailurePolicy.retry(3))) {
+            try {
+                source.next();
+                assert (false);
+            } catch (RuntimeException e) {
+                assert (e.getMessage().equals("Rate not available"));
+            }
+            assert (!source.hasNext() && source.stats().failedAttempts >= 3); // other calls were cancelled when closed
+        }
+
+        // closing cancels calls in flight, and they are not attempted again
+        var calls = new AtomicInteger();
+        var source = new PrefetchingSource<String>(() -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Call cancelled", e);
+            }
+            throw new RuntimeException("Rate not available");
+        }, 4, FailurePolicy.retry(5));
+        while (calls.get() < 4) Thread.sleep(1);
+        source.close();
+        Thread.sleep(100);
+        assert (calls.get() == 4 && source.stats().failedAttempts == 0);
+    }
+}
+
+/**
+ * What to do when a call fails: call again, at most maxAttempts times in total,
+ * and then either skip the element or fail.
+ */
+class FailurePolicy {
+    public final int maxAttempts;
+    public final boolean skipWhenExhausted;
+
+    public FailurePolicy(int maxAttempts, boolean skipWhenExhausted) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("At least one attempt is needed, got " + maxAttempts);
+        this.maxAttempts = maxAttempts;
+        this.skipWhenExhausted = skipWhenExhausted;
+    }
+
+    public static FailurePolicy fail() {
+        return new FailurePolicy(1, false);
+    }
+
+    public static FailurePolicy skip() {
+        return new FailurePolicy(1, true);
+    }
+
+    public static FailurePolicy retry(int maxAttempts) {
+        return new FailurePolicy(maxAttempts, false);
+    }
+
+    @Override
+    public String toString() {
+        if (maxAttempts == 1) return skipWhenExhausted ? "skip" : "fail";
+        return (skipWhenExhausted ? "skip after " : "fail after ") + maxAttempts + " attempts";
+    }
+}
+
+/**
+ * An infinite source of elements returned by call, which is called ahead, in virtual threads.
+ * A ring of prefetch futures holds elements that are being fetched or wait for the consumer:
+ * when the consumer takes one, the call for its slot is started again, so there are always prefetch calls ahead.
+ * Elements come in the order their calls were started.
+ * <p>
+ * When a call fails, it's attempted again, as the policy says. When all attempts fail, the element is skipped,
+ * or next throws the exception of the last attempt, and the source is closed.
+ * Closing the source interrupts calls in flight, and no call is attempted after that. Attempts that fail
+ * because the source was closed are not counted as failed.
+ * Like streams, a source is used by one consumer thread.
+ */
+class PrefetchingSource<T> implements Iterator<T>, AutoCloseable {
+    private final Supplier<T> call;
+    private final FailurePolicy policy;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<CompletableFuture<T>> ring;
+    private int head = 0;
+    private volatile boolean closed = false; // read by calls
+    private long delivered = 0, alreadyFetched = 0, skipped = 0;
+    private final LongAdder failedAttempts = new LongAdder(); // updated by calls
+
+    public PrefetchingSource(Supplier<T> call, int prefetch, FailurePolicy policy) {
+        this.call = call;
+        this.policy = policy;
+        this.ring = new ArrayList<>(prefetch);
+        for (int i = 0; i < prefetch; i++) ring.add(fetch());
+    }
+
+    private CompletableFuture<T> fetch() {
+        return CompletableFuture.supplyAsync(() -> {
+            RuntimeException error = null;
+            for (int attempt = 0; attempt < policy.maxAttempts; attempt++) {
+                // the interrupt alone isn't enough: calls that catch InterruptedException may clear it
+                if (closed) throw new CancellationException("Prefetching source closed");
+                try {
+                    return call.get();
+                } catch (RuntimeException e) {
+                    if (closed) throw new CancellationException("Prefetching source closed");
+                    failedAttempts.increment();
+                    error = e;
+                }
+            }
+            throw error;
+        }, executor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed;
+    }
+
+    @Override
+    public T next() {
+        while (!closed) {
+            var element = ring.get(head);
+            if (element.isDone()) alreadyFetched++;
+            ring.set(head, fetch());
+            head = (head + 1) % ring.size();
+            try {
+                var value = element.join();
+                delivered++;
+                return value;
+            } catch (CompletionException e) {
+                if (policy.skipWhenExhausted) {
+                    skipped++;
+                    continue;
+                }
+                close();
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * The source as an infinite stream. Closing the stream closes the source.
+     */
+    public Stream<T> stream() {
+        var spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    public PrefetchStats stats() {
+        return new PrefetchStats(delivered, alreadyFetched, skipped, failedAttempts.sum());
+    }
+
+    /**
+     * Cancels all calls that are still running.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+}
+
+/**
+ * Elements delivered, how many of them (and skipped ones) were already fetched when the consumer asked for them,
+ * elements skipped, and failed calls (including retried ones).
+ */
+class PrefetchStats {
+    public final long delivered;
+    public final long alreadyFetched;
+    public final long skipped;
+    public final long failedAttempts;
+
+    public PrefetchStats(long delivered, long alreadyFetched, long skipped, long failedAttempts) {
+        this.delivered = delivered;
+        this.alreadyFetched = alreadyFetched;
+        this.skipped = skipped;
+        this.failedAttempts = failedAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d delivered, %d already fetched when needed, %d skipped, %d failed calls",
+                delivered, alreadyFetched, skipped, failedAttempts);
+    }
+}
@@ -0,0 +1,30 @@
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Check-ins keyed by String and counted in boxed Integers hash the name and may allocate on every check-in.
+ * Here, each city name is turned into a small int id once, and check-ins are counted in primitive longs indexed by id.
+ */
+public class ch10_CheckInsCityIds {
+    public static void main(String[] args) {
+        var cities = new CityDictionary();
+        assert (cities.id("Cairo") == 0 && cities.id("Auckland") == 1 && cities.id("Cairo") == 0);
+        assert (cities.name(1).equals("Auckland") && cities.size() == 2);
+
+        var cityCheckIns = new DictionaryCheckInsStore(cities);
+        var auckland = cities.id("Auckland");
+        for (int i = 0; i < 1000; i++) {
+            cityCheckIns.storeCheckIn("Cairo");
+            cityCheckIns.storeCheckIn(auckland); // producers that already know the id skip the dictionary lookup
+        }
+        cityCheckIns.storeCheckIns("Lima", 5);
+        assert (cityCheckIns.checkIns(auckland) == 1000);
+        assert (cityCheckIns.snapshot().equals(Map.of("Cairo", 1000L, "Auckland", 1000L, "Lima", 5L)));
+
+        try (var actorCheckIns = new ActorCheckInsStore(1, Duration.ofSeconds(1), DictionaryCheckInsStore::new)) {
+            for (int i = 0; i < 1000; i++) actorCheckIns.storeCheckIn(i % 2 == 0 ? "Cairo" : "Auckland");
+            assert (actorCheckIns.snapshot().equals(Map.of("Cairo", 500L, "Auckland", 500L)));
+        }
+        System.out.println("[city ids] Computing ranking based on: " + cityCheckIns.snapshot());
+    }
+}
@@ -1,11 +1,9 @@
-import java.util.Collections;
+import java.time.Duration;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import akka.actor.*;
-import static akka.pattern.Patterns.ask;
 
 /**
  * These are not fully-blown solutions to check-ins example.
@@ -16,9 +14,11 @@ public class ch10_CheckInsImperative {
         noSynchronization();
         monitors();
         actors();
+        batchedActors();
         threadSafeDataStructures();
         atomicReferencesImperative();
         atomicReferencesFunctional();
+        stripedCounters();
     }
 
     static void noSynchronization() throws InterruptedException {
@@ -72,10 +72,32 @@ public class ch10_CheckInsImperative {
 
         Thread.sleep(300);
         rankingActor.tell(new ComputeRanking(checkInsActor), null);
+        rankingActor.tell(new ComputeTopCities(checkInsActor, 3), null);
         Thread.sleep(100);
         system.terminate();
     }
 
+    static void batchedActors() throws InterruptedException {
+        ActorSystem system = ActorSystem.create("batched-system");
+        ActorRef checkInsActor = system.actorOf(Props.create(CheckInsActor.class), "check-ins-actor");
+        var coalescer = new CheckInsCoalescer(checkInsActor, 100, Duration.ofMillis(50));
+        Runnable task = () -> {
+            for(int i = 0; i < 1000; i++) {
+                var cityName = i % 2 == 0 ? "Cairo" : "Auckland";
+                coalescer.storeCheckIn(cityName); // sent to the actor as a part of a StoreCheckIns batch
+            }
+        };
+        new Thread(task).start();
+        new Thread(task).start();
+
+        Thread.sleep(300);
+        // coalescer flushes buffered check-ins before asking, so the ranking doesn't miss any of them
+        var cityCheckIns = coalescer.currentCheckIns(Duration.ofMillis(1000)).toCompletableFuture().join();
+        System.out.println("[batched actors] Computing ranking based on: " + cityCheckIns);
+        coalescer.close();
+        system.terminate();
+    }
+
     static void threadSafeDataStructures() throws InterruptedException {
         var cityCheckIns = new ConcurrentHashMap<String, Integer>();
         Runnable task = () -> {
@@ -94,15 +116,16 @@ public class ch10_CheckInsImperative {
     }
 
     static void atomicReferencesImperative() throws InterruptedException {
-        var cityCheckIns = new AtomicReference<>(new HashMap<String, Integer>());
+        var cityCheckIns = new AtomicReference<>(PersistentHashMap.<String, Integer>empty());
         Runnable task = () -> {
             for(int i = 0; i < 1000; i++) {
                 var cityName = i % 2 == 0 ? "Cairo" : "Auckland";
                 var updated = false;
                 while(!updated) {
                     var currentCheckIns = cityCheckIns.get();
-                    var newCheckIns = new HashMap<>(currentCheckIns); // this is critical, because AtomicReference in Java expects two different objects passed to CAS
-                    newCheckIns.compute(cityName,
+                    // this is critical, because AtomicReference in Java expects two different objects passed to CAS
+                    // (a persistent map returns a new object that shares everything but the updated path with the current one)
+                    var newCheckIns = currentCheckIns.updatedWith(cityName,
                             (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
                     updated = cityCheckIns.compareAndSet(currentCheckIns, newCheckIns);
                 }
@@ -116,16 +139,12 @@ public class ch10_CheckInsImperative {
     }
 
     static void atomicReferencesFunctional() throws InterruptedException {
-        var cityCheckIns = new AtomicReference<>(new HashMap<String, Integer>());
+        var cityCheckIns = new AtomicReference<>(PersistentHashMap.<String, Integer>empty());
         Runnable task = () -> {
             for(int i = 0; i < 1000; i++) {
                 var cityName = i % 2 == 0 ? "Cairo" : "Auckland";
-                cityCheckIns.updateAndGet(oldCheckIns -> {
-                    var newCheckIns = new HashMap<>(oldCheckIns);
-                    newCheckIns.compute(cityName,
-                            (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
-                    return newCheckIns;
-                });
+                cityCheckIns.updateAndGet(oldCheckIns -> oldCheckIns.updatedWith(cityName,
+                        (city, checkIns) -> checkIns != null ? checkIns + 1 : 1));
             }
         };
         new Thread(task).start();
@@ -134,51 +153,25 @@ public class ch10_CheckInsImperative {
         Thread.sleep(300);
         System.out.println("[atomic reference functional] Computing ranking based on: " + cityCheckIns.get());
     }
-}
-
-class CheckInsActor extends AbstractActor {
-    private Map<String, Integer> cityCheckIns = new HashMap<>();
-
-    public Receive createReceive() {
-        return receiveBuilder().match(StoreCheckIn.class, message -> {
-              cityCheckIns.compute(message.cityName,
-                      (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
-        }).match(GetCurrentCheckIns.class, message -> {
-            getSender().tell(new HashMap<>(cityCheckIns), null);
-        }).build();
-    }
-}
 
-class RankingActor extends AbstractActor {
-    public Receive createReceive() {
-        return receiveBuilder().match(ComputeRanking.class, message -> {
-            ask(message.checkInsActor, new GetCurrentCheckIns(), 1000).foreach(
-                    cityCheckIns -> {
-                        System.out.println("[actors] Computing ranking based on: " + cityCheckIns);
-                        return this;
-                    },
-                    getContext().dispatcher()
-            );
-        }).build();
-    }
-}
-
-class StoreCheckIn {
-    public final String cityName;
-
-    public StoreCheckIn(String cityName) {
-        this.cityName = cityName;
-    }
-}
-
-class GetCurrentCheckIns {
-}
-
-class ComputeRanking {
-    public final ActorRef checkInsActor;
+    static void stripedCounters() throws InterruptedException {
+        CheckInsStore cityCheckIns = new StripedCheckInsStore();
+        Runnable task = () -> {
+            for(int i = 0; i < 1000; i++) {
+                var cityName = i % 2 == 0 ? "Cairo" : "Auckland";
+                cityCheckIns.storeCheckIn(cityName);
+            }
+        };
+        new Thread(task).start();
+        new Thread(task).start();
 
-    public ComputeRanking(ActorRef checkInsActor) {
-        this.checkInsActor = checkInsActor;
+        // main thread is the ranking computation thread, it only reads a snapshot of counters
+        Thread.sleep(300);
+        System.out.println("[striped counters] Computing ranking based on: " + cityCheckIns.snapshot());
     }
 }
 
+/*
+ * The remaining strategies shown above, packaged as CheckInsStores, so they can be compared using the same code
+ * (see ch10_CheckInsLoadDriver).
+ */
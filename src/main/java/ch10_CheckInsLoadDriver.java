@@ -0,0 +1,205 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs check-in strategies from ch10_CheckInsImperative under a configurable load:
+ * many producers (platform or virtual threads) storing check-ins of many cities, some more popular than others,
+ * and a ranking thread that reads a snapshot of all check-ins every now and then.
+ */
+public class ch10_CheckInsLoadDriver {
+    static final Map<String, Supplier<CheckInsStore>> STRATEGIES = new LinkedHashMap<>();
+    static {
+        STRATEGIES.put("monitors", MonitorCheckInsStore::new);
+        STRATEGIES.put("actors", () -> new ActorCheckInsStore(1, Duration.ofSeconds(30)));
+        STRATEGIES.put("batched actors", () -> new ActorCheckInsStore(1000, Duration.ofSeconds(30)));
+        STRATEGIES.put("actors with city ids",
+                () -> new ActorCheckInsStore(1, Duration.ofSeconds(30),
+                        () -> new RankedCheckInsStore(new DictionaryCheckInsStore())));
+        STRATEGIES.put("sharded actors", () -> new ShardedCheckInsStore(4, 1, Duration.ofSeconds(30)));
+        STRATEGIES.put("batched sharded actors", () -> new ShardedCheckInsStore(4, 1000, Duration.ofSeconds(30)));
+        STRATEGIES.put("actors with log", () -> new ActorCheckInsStore(1, Duration.ofSeconds(30),
+                () -> new RankedCheckInsStore(LoggedCheckInsStore.temporary(new HashMapCheckInsStore()))));
+        STRATEGIES.put("thread-safe data structures", ConcurrentHashMapCheckInsStore::new);
+        STRATEGIES.put("thread-safe data structures with log",
+                () -> LoggedCheckInsStore.temporary(new ConcurrentHashMapCheckInsStore()));
+        STRATEGIES.put("atomic reference imperative", AtomicReferenceImperativeCheckInsStore::new);
+        STRATEGIES.put("atomic reference functional", AtomicReferenceFunctionalCheckInsStore::new);
+        STRATEGIES.put("striped counters", StripedCheckInsStore::new);
+        STRATEGIES.put("city ids", DictionaryCheckInsStore::new);
+        STRATEGIES.put("last 5 minutes",
+                () -> ExpiringCheckInsStore.windowed(Duration.ofMinutes(5), 10, System::currentTimeMillis));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        var platformThreads = new LoadProfile(4, false, 1000, 1.0, Duration.ofMillis(300), Duration.ofMillis(50));
+        var virtualThreads = new LoadProfile(100, true, 100_000, 1.2, Duration.ofMillis(300), Duration.ofMillis(50));
+        for (var profile : List.of(platformThreads, virtualThreads)) {
+            System.out.println(profile);
+            for (var strategy : STRATEGIES.entrySet()) {
+                var report = run(strategy.getValue(), profile);
+                System.out.printf("[%s] %s\n", strategy.getKey(), report);
+                assert (report.correct());
+            }
+        }
+    }
+
+    static LoadReport run(Supplier<CheckInsStore> strategy, LoadProfile profile) throws InterruptedException {
+        var cities = new ZipfDistribution(profile.cities, profile.skew);
+        var sentCheckIns = new LongAdder();
+        var readLatencies = new ArrayList<Long>();
+        try (var store = strategy.get()) {
+            var deadline = System.nanoTime() + profile.duration.toNanos();
+            Runnable producer = () -> {
+                var random = ThreadLocalRandom.current();
+                long sent = 0;
+                while ((sent & 1023) != 0 || System.nanoTime() < deadline) {
+                    store.storeCheckIn(cities.sample(random));
+                    sent++;
+                }
+                sentCheckIns.add(sent);
+            };
+
+            var start = System.nanoTime();
+            var producers = new ArrayList<Thread>();
+            for (int i = 0; i < profile.producers; i++) {
+                var builder = profile.virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+                producers.add(builder.name("producer-" + i).start(producer));
+            }
+
+            // this thread is the ranking computation thread
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(profile.readInterval.toMillis());
+                var readStart = System.nanoTime();
+                store.snapshot();
+                readLatencies.add(System.nanoTime() - readStart);
+            }
+            for (var thread : producers) thread.join();
+            var sent = System.nanoTime();
+            // asynchronous stores may still have check-ins in mailboxes or buffers, they count only once stored
+            store.awaitStored();
+            var stored = System.nanoTime();
+
+            var storedCheckIns = store.snapshot().values().stream().mapToLong(Long::longValue).sum();
+            return new LoadReport(sentCheckIns.sum(), storedCheckIns, stored - start, stored - sent, readLatencies);
+        }
+    }
+}
+
+/**
+ * Number of cities and how skewed their popularity is:
+ * 0 means all cities are equally popular, around 1 means the top city gets a big share of all check-ins.
+ */
+class LoadProfile {
+    public final int producers;
+    public final boolean virtualThreads;
+    public final int cities;
+    public final double skew;
+    public final Duration duration;
+    public final Duration readInterval;
+
+    public LoadProfile(int producers, boolean virtualThreads, int cities, double skew, Duration duration,
+                       Duration readInterval) {
+        this.producers = producers;
+        this.virtualThreads = virtualThreads;
+        this.cities = cities;
+        this.skew = skew;
+        this.duration = duration;
+        this.readInterval = readInterval;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s producers, %d cities (skew %.1f), %d ms, reading every %d ms",
+                producers, virtualThreads ? "virtual" : "platform", cities, skew,
+                duration.toMillis(), readInterval.toMillis());
+    }
+}
+
+class LoadReport {
+    public final long sentCheckIns;
+    public final long storedCheckIns;
+    public final long elapsedNanos;
+    public final long drainNanos;
+    public final List<Long> readLatencies;
+
+    /**
+     * @param elapsedNanos time until all check-ins were stored
+     * @param drainNanos   part of elapsedNanos after producers finished, spent waiting for check-ins to be stored
+     */
+    public LoadReport(long sentCheckIns, long storedCheckIns, long elapsedNanos, long drainNanos,
+                      List<Long> readLatencies) {
+        this.sentCheckIns = sentCheckIns;
+        this.storedCheckIns = storedCheckIns;
+        this.elapsedNanos = elapsedNanos;
+        this.drainNanos = drainNanos;
+        this.readLatencies = readLatencies;
+    }
+
+    /**
+     * Stored check-ins per second, not only sent ones: asynchronous stores are timed until they catch up.
+     */
+    public double checkInsPerSecond() {
+        return sentCheckIns * 1e9 / elapsedNanos;
+    }
+
+    public boolean correct() {
+        return sentCheckIns == storedCheckIns;
+    }
+
+    /**
+     * Read latency in milliseconds at the given percentile (0-100).
+     */
+    public double readLatencyMillis(double percentile) {
+        if (readLatencies.isEmpty()) return 0;
+        var sorted = readLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        var index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.2fM check-ins/s (%.0f ms draining), %d reads (p50 %.2f ms, p99 %.2f ms, max %.2f ms), "
+                        + "%s",
+                checkInsPerSecond() / 1e6, drainNanos / 1e6, readLatencies.size(),
+                readLatencyMillis(50), readLatencyMillis(99), readLatencyMillis(100),
+                correct()
+                        ? "all " + sentCheckIns + " check-ins stored"
+                        : "stored " + storedCheckIns + " of " + sentCheckIns + " check-ins");
+    }
+}
+
+/**
+ * Chooses city names following Zipf's law: the k-th most popular city is chosen with probability
+ * proportional to 1/k^skew. City names are created upfront, so sampling doesn't allocate.
+ */
+class ZipfDistribution {
+    private final String[] cityNames;
+    private final double[] cumulativeProbabilities;
+
+    public ZipfDistribution(int cities, double skew) {
+        cityNames = new String[cities];
+        cumulativeProbabilities = new double[cities];
+        double total = 0;
+        for (int i = 0; i < cities; i++) {
+            cityNames[i] = "City " + i;
+            total += 1 / Math.pow(i + 1, skew);
+            cumulativeProbabilities[i] = total;
+        }
+        for (int i = 0; i < cities; i++) {
+            cumulativeProbabilities[i] /= total;
+        }
+    }
+
+    public String sample(Random random) {
+        var index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        return cityNames[Math.min(index >= 0 ? index : -index - 1, cityNames.length - 1)];
+    }
+}
@@ -0,0 +1,55 @@
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Check-ins stored only in memory are lost when the application is restarted.
+ * Here, each check-in is also appended to a log on disk, so the check-ins can be recovered after a restart (or a crash).
+ */
+public class ch10_CheckInsLog {
+    public static void main(String[] args) throws Exception {
+        var directory = Files.createTempDirectory("check-ins");
+        try {
+            try (var checkIns = new LoggedCheckInsStore(CheckInsLog.open(directory),
+                    new ConcurrentHashMapCheckInsStore())) {
+                var producers = new Thread[4];
+                for (int i = 0; i < producers.length; i++) {
+                    producers[i] = Thread.ofPlatform().start(() -> {
+                        for (int j = 0; j < 10_000; j++) checkIns.storeCheckIn(j % 4 == 0 ? "Cairo" : "Auckland");
+                    });
+                }
+                for (var producer : producers) producer.join();
+                checkIns.storeCheckIns("Lima", 5);
+            }
+
+            // the first restart loads the snapshot written by close
+            var recovered = CheckInsLog.open(directory, Duration.ofMillis(10), Duration.ofHours(1));
+            assert (recovered.recoveredCheckIns().equals(Map.of("Cairo", 10_000L, "Auckland", 30_000L, "Lima", 5L)));
+
+            // the second restart happens after a "crash": it loads the snapshot and replays the rest of the log
+            try (var checkIns = new ActorCheckInsStore(1, Duration.ofSeconds(1),
+                    () -> new LoggedCheckInsStore(recovered, new HashMapCheckInsStore()))) {
+                for (int i = 0; i < 1000; i++) checkIns.storeCheckIn(i % 2 == 0 ? "Cairo" : "Sydney");
+                checkIns.awaitStored();
+                recovered.snapshot();
+                checkIns.storeCheckIn("Sydney");
+                checkIns.awaitStored();
+                recovered.awaitDurable();
+                try {
+                    CheckInsLog.open(directory);
+                    assert (false);
+                } catch (IllegalStateException e) {
+                    System.out.println("[log] " + e.getMessage());
+                }
+                recovered.abandon(); // the "crash": no snapshot of the last check-in is written
+            }
+            try (var afterCrash = CheckInsLog.open(directory)) {
+                assert (afterCrash.recoveredCheckIns()
+                        .equals(Map.of("Cairo", 10_500L, "Auckland", 30_000L, "Lima", 5L, "Sydney", 501L)));
+                System.out.println("[log] Computing ranking based on: " + afterCrash.recoveredCheckIns());
+            }
+        } finally {
+            CheckInsLog.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single CheckInsActor handles one message at a time, so it can use only one core, no matter how many there are.
+ * Here, cities are split between many CheckInsActors (shards): all check-ins of a city go to the same shard,
+ * so shards don't share any state and can store check-ins in parallel.
+ */
+public class ch10_CheckInsSharded {
+    public static void main(String[] args) throws InterruptedException {
+        try (var checkIns = new ShardedCheckInsStore(4, 1, Duration.ofSeconds(1))) {
+            Runnable task = () -> {
+                for (int i = 0; i < 1000; i++) {
+                    checkIns.storeCheckIn(i % 10 == 0 ? "Lima" : i % 2 == 0 ? "Cairo" : "Auckland");
+                }
+            };
+            var producers = List.of(new Thread(task), new Thread(task));
+            for (var producer : producers) producer.start();
+            for (var producer : producers) producer.join();
+
+            assert (checkIns.snapshot().equals(Map.of("Cairo", 800L, "Auckland", 1000L, "Lima", 200L)));
+            assert (checkIns.topCities(2).equals(List.of(Map.entry("Auckland", 1000L), Map.entry("Cairo", 800L))));
+            System.out.println("[sharded actors] Top cities: " + checkIns.topCities(3));
+        }
+    }
+}
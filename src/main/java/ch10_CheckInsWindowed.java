@@ -0,0 +1,53 @@
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * All-time check-in totals don't tell us which cities are popular right now.
+ * These stores count only recent check-ins: the ones from the last few minutes (a sliding window)
+ * or all of them, but with older check-ins worth less and less (an exponentially decayed score).
+ */
+public class ch10_CheckInsWindowed {
+    public static void main(String[] args) {
+        var now = new AtomicLong(0);
+        var lastMinute = ExpiringCheckInsStore.windowed(Duration.ofMinutes(1), 6, now::get);
+        lastMinute.storeCheckIns("Cairo", 3);
+        now.set(Duration.ofSeconds(30).toMillis());
+        lastMinute.storeCheckIns("Auckland", 2);
+        assert (lastMinute.snapshot().equals(Map.of("Cairo", 3L, "Auckland", 2L)));
+        now.set(Duration.ofSeconds(65).toMillis());
+        assert (lastMinute.snapshot().equals(Map.of("Auckland", 2L))); // Cairo's check-ins expired and Cairo was removed
+        now.set(Duration.ofSeconds(95).toMillis());
+        assert (lastMinute.snapshot().isEmpty());
+        try {
+            ExpiringCheckInsStore.windowed(Duration.ofMillis(5), 10, now::get); // buckets of 0.5 ms
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println("[windowed] " + e.getMessage());
+        }
+
+        // a store that is only written to removes expired cities too, in a sweep run by a write once a window
+        now.set(0);
+        var writeOnly = ExpiringCheckInsStore.windowed(Duration.ofMinutes(1), 6, now::get);
+        for (int i = 0; i < 1000; i++) writeOnly.storeCheckIn("City " + i);
+        now.set(Duration.ofMinutes(2).toMillis());
+        writeOnly.storeCheckIn("Cairo");
+        assert (writeOnly.size() == 1);
+
+        now.set(0);
+        var decayed = ExpiringCheckInsStore.decayed(Duration.ofMinutes(1), now::get);
+        decayed.storeCheckIns("Cairo", 8);
+        now.set(Duration.ofMinutes(1).toMillis());
+        decayed.storeCheckIns("Auckland", 5);
+        assert (decayed.snapshot().equals(Map.of("Cairo", 4L, "Auckland", 5L))); // Cairo's check-ins are worth half
+        assert (decayed.topN(1).equals(List.of(Map.entry("Auckland", 5L))));
+
+        // any CheckInsStore can be used as the state of CheckInsActor
+        try (var checkIns = new ActorCheckInsStore(1, Duration.ofSeconds(1),
+                () -> ExpiringCheckInsStore.windowed(Duration.ofMinutes(5), 10, System::currentTimeMillis))) {
+            for (int i = 0; i < 1000; i++) checkIns.storeCheckIn(i % 2 == 0 ? "Cairo" : "Auckland");
+            System.out.println("[last 5 minutes] Computing ranking based on: " + checkIns.snapshot());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.Map;
+
+/**
+ * An immutable map that can be used in Java code the same way Scala's immutable Map is used in the book.
+ * Updating it doesn't copy the whole map (like new HashMap<>(currentCheckIns) does),
+ * but only the path from the root to the updated entry, so both versions share everything else.
+ */
+public class ch10_PersistentHashMap {
+    public static void main(String[] args) {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        var cairo = empty.updated("Cairo", 1);
+        var cairoAndAuckland = cairo.updated("Auckland", 1).updatedWith("Cairo", (city, checkIns) -> checkIns + 1);
+        assert (empty.size() == 0 && empty.get("Cairo") == null);
+        assert (cairo.size() == 1 && cairo.get("Cairo") == 1); // old versions are never changed
+        assert (cairoAndAuckland.size() == 2 && cairoAndAuckland.get("Cairo") == 2);
+        assert (cairoAndAuckland.toMap().equals(Map.of("Cairo", 2, "Auckland", 1)));
+
+        // "Aa" and "BB" have the same hashCode
+        var collisions = empty.updated("Aa", 1).updated("BB", 2).updatedWith("Aa", (key, value) -> value + 10);
+        assert (collisions.size() == 2 && collisions.get("Aa") == 11 && collisions.get("BB") == 2);
+
+        var cities = empty;
+        for (int i = 0; i < 100_000; i++) {
+            cities = cities.updatedWith("City " + (i % 50_000), (city, checkIns) -> checkIns != null ? checkIns + 1 : 1);
+        }
+        assert (cities.size() == 50_000 && cities.get("City 27") == 2 && cities.get("City 50000") == null);
+        System.out.println(cairoAndAuckland);
+    }
+}
@@ -4,6 +4,7 @@ import cats.effect.unsafe.implicits.global
 import fs2.Stream
 
 import java.util.concurrent.TimeUnit
+import scala.collection.immutable.TreeMap
 import scala.concurrent.duration._
 
 object ch10_CheckIns {
@@ -53,6 +54,35 @@ object ch10_CheckIns {
       .take(3)
   }
 
+  /** BONUS: a ranking index that is updated with each check-in
+    * (topCities sorts all cities each time it's called, which is slow when there are millions of them)
+    *
+    * Cities are grouped by their number of check-ins and groups are ordered from the most popular one,
+    * so adding a check-in updates only two groups and getting top n cities visits only n cities.
+    */
+  case class CityRanking(cityCheckIns: Map[City, Int], citiesByCheckIns: TreeMap[Int, Set[City]]) {
+    def add(city: City): CityRanking = {
+      val checkIns      = cityCheckIns.getOrElse(city, 0)
+      val withoutCity   = citiesByCheckIns.updatedWith(checkIns)(_.map(_ - city).filter(_.nonEmpty))
+      val newCheckIns   = checkIns + 1
+      val withMovedCity = withoutCity.updatedWith(newCheckIns)(_.map(_ + city).orElse(Some(Set(city))))
+      CityRanking(cityCheckIns.updated(city, newCheckIns), withMovedCity)
+    }
+
+    def top(n: Int): List[CityStats] = {
+      citiesByCheckIns.iterator
+        .flatMap(_ match {
+          case (checkIns, cities) => cities.iterator.map(city => CityStats(city, checkIns))
+        })
+        .take(n)
+        .toList
+    }
+  }
+
+  object CityRanking {
+    val empty: CityRanking = CityRanking(Map.empty, TreeMap.empty(Ordering[Int].reverse))
+  }
+
   /** Helper function that runs the given IO[A], times its execution, prints it, and returns it
     */
   private def unsafeRunTimedIO[A](io: IO[A]): A = {
@@ -319,6 +349,179 @@ object ch10_CheckIns {
     )
   }
 
+  /** BONUS: concurrent & up-to-date without sorting all cities over and over again
+    * (the ranking index is updated with each check-in, so the current ranking is computed only when it's needed)
+    */
+  def storeCheckInRanked(storedRanking: Ref[IO, CityRanking])(city: City): IO[Unit] = {
+    storedRanking.update(_.add(city))
+  }
+
+  object Version4 {
+    def processCheckIns(checkIns: Stream[IO, City]): IO[ProcessingCheckIns] = {
+      for {
+        storedRanking  <- Ref.of[IO, CityRanking](CityRanking.empty)
+        checkInsProgram = checkIns.evalMap(storeCheckInRanked(storedRanking)).compile.drain
+        fiber          <- checkInsProgram.start
+      } yield ProcessingCheckIns(storedRanking.get.map(_.top(3)), fiber.cancel)
+    }
+  }
+
+  private def runVersion4 = {
+    assert(
+      CityRanking.empty
+        .add(City("Sydney"))
+        .add(City("Lima"))
+        .add(City("Sydney"))
+        .top(3) == List(CityStats(City("Sydney"), 2), CityStats(City("Lima"), 1))
+    )
+
+    println("The following should print two rankings")
+    assert(
+      unsafeRunTimedIO(
+        for {
+          processing <- Version4.processCheckIns(checkIns)
+          ranking    <- processing.currentRanking
+          _          <- IO.println(ranking)
+          _          <- IO.sleep(1.second)
+          newRanking <- processing.currentRanking
+          _          <- processing.stop
+        } yield newRanking
+      ).size == 3
+    )
+  }
+
+  /** BONUS: rankings of recent check-ins
+    * (all-time totals don't tell us which cities are popular right now)
+    *
+    * Both versions are updated only when a city gets a check-in (or when the ranking is computed),
+    * and they forget cities that don't have recent check-ins, so they don't grow forever.
+    */
+  trait RecentCheckIns {
+    def add(city: City, now: FiniteDuration): RecentCheckIns
+    def checkIns(now: FiniteDuration): Map[City, Int]
+    def withoutExpired(now: FiniteDuration): RecentCheckIns
+  }
+
+  /** Check-ins from the last window, counted in a few time buckets per city (older buckets are dropped)
+    */
+  case class WindowedCheckIns(window: FiniteDuration, buckets: Int, cityBuckets: Map[City, Map[Long, Int]])
+      extends RecentCheckIns {
+    private def bucket(now: FiniteDuration): Long = now.toMillis / (window.toMillis / buckets)
+
+    private def recentBuckets(cityBuckets: Map[Long, Int], now: FiniteDuration): Map[Long, Int] = {
+      cityBuckets.filter(_._1 > bucket(now) - buckets)
+    }
+
+    def add(city: City, now: FiniteDuration): WindowedCheckIns = {
+      val recent = recentBuckets(cityBuckets.getOrElse(city, Map.empty), now)
+      copy(cityBuckets = cityBuckets.updated(city, recent.updatedWith(bucket(now))(_.map(_ + 1).orElse(Some(1)))))
+    }
+
+    def checkIns(now: FiniteDuration): Map[City, Int] = {
+      cityBuckets.map(_ match {
+        case (city, counts) => (city, recentBuckets(counts, now).values.sum)
+      }).filter(_._2 > 0)
+    }
+
+    def withoutExpired(now: FiniteDuration): WindowedCheckIns = {
+      copy(cityBuckets = cityBuckets.filter(_ match {
+        case (_, counts) => recentBuckets(counts, now).nonEmpty
+      }))
+    }
+  }
+
+  /** Each check-in is worth less and less: the score of a city halves every halfLife
+    */
+  case class DecayedCheckIns(halfLife: FiniteDuration, scores: Map[City, DecayedScore]) extends RecentCheckIns {
+    private def decayed(score: DecayedScore, now: FiniteDuration): Double = {
+      score.value * Math.pow(0.5, (now - score.updatedAt) / halfLife)
+    }
+
+    def add(city: City, now: FiniteDuration): DecayedCheckIns = {
+      val current = scores.get(city).map(decayed(_, now)).getOrElse(0.0)
+      copy(scores = scores.updated(city, DecayedScore(current + 1, now)))
+    }
+
+    def checkIns(now: FiniteDuration): Map[City, Int] = {
+      scores.map(_ match {
+        case (city, score) => (city, Math.round(decayed(score, now)).toInt)
+      }).filter(_._2 > 0)
+    }
+
+    def withoutExpired(now: FiniteDuration): DecayedCheckIns = {
+      copy(scores = scores.filter(_ match {
+        case (_, score) => decayed(score, now) >= 0.5
+      }))
+    }
+  }
+
+  case class DecayedScore(value: Double, updatedAt: FiniteDuration)
+
+  def storeRecentCheckIn(storedCheckIns: Ref[IO, RecentCheckIns])(city: City): IO[Unit] = {
+    IO.realTime.flatMap(now => storedCheckIns.update(_.add(city, now)))
+  }
+
+  def updateRecentRanking(
+      storedCheckIns: Ref[IO, RecentCheckIns],
+      storedRanking: Ref[IO, List[CityStats]]
+  ): IO[Nothing] = {
+    (for {
+      now        <- IO.realTime
+      newRanking <- storedCheckIns.get.map(checkIns => topCities(checkIns.checkIns(now)))
+      _          <- storedRanking.set(newRanking)
+    } yield ()).foreverM
+  }
+
+  def removeExpiredCheckIns(storedCheckIns: Ref[IO, RecentCheckIns], every: FiniteDuration): IO[Nothing] = {
+    IO.sleep(every)
+      .flatMap(_ => IO.realTime)
+      .flatMap(now => storedCheckIns.update(_.withoutExpired(now)))
+      .foreverM
+  }
+
+  object Version5 {
+    def processCheckIns(checkIns: Stream[IO, City], recentCheckIns: RecentCheckIns): IO[ProcessingCheckIns] = {
+      for {
+        storedCheckIns <- Ref.of[IO, RecentCheckIns](recentCheckIns)
+        storedRanking  <- Ref.of[IO, List[CityStats]](List.empty)
+        rankingProgram  = updateRecentRanking(storedCheckIns, storedRanking)
+        checkInsProgram = checkIns.evalMap(storeRecentCheckIn(storedCheckIns)).compile.drain
+        expiryProgram   = removeExpiredCheckIns(storedCheckIns, 1.second)
+        fiber          <- List(rankingProgram, checkInsProgram, expiryProgram).parSequence.start
+      } yield ProcessingCheckIns(storedRanking.get, fiber.cancel)
+    }
+  }
+
+  private def runVersion5 = {
+    val lastMinute = WindowedCheckIns(1.minute, 6, Map.empty)
+      .add(City("Sydney"), 0.seconds)
+      .add(City("Lima"), 30.seconds)
+      .add(City("Lima"), 35.seconds)
+    assert(lastMinute.checkIns(40.seconds) == Map(City("Sydney") -> 1, City("Lima") -> 2))
+    assert(lastMinute.checkIns(65.seconds) == Map(City("Lima") -> 2))
+    assert(lastMinute.withoutExpired(95.seconds).checkIns(95.seconds).isEmpty)
+
+    val decayed = DecayedCheckIns(1.minute, Map.empty)
+      .add(City("Sydney"), 0.seconds)
+      .add(City("Sydney"), 0.seconds)
+      .add(City("Lima"), 1.minute)
+    assert(decayed.checkIns(1.minute) == Map(City("Sydney") -> 1, City("Lima") -> 1))
+
+    println("The following should print two rankings of check-ins from the last 5 minutes")
+    assert(
+      unsafeRunTimedIO(
+        for {
+          processing <- Version5.processCheckIns(checkIns, WindowedCheckIns(5.minutes, 10, Map.empty))
+          ranking    <- processing.currentRanking
+          _          <- IO.println(ranking)
+          _          <- IO.sleep(1.second)
+          newRanking <- processing.currentRanking
+          _          <- processing.stop
+        } yield newRanking
+      ).size == 3
+    )
+  }
+
   // Quick quiz: fibers
   // What will this program do? How long will it run?
   private def quiz = {
@@ -339,6 +542,8 @@ object ch10_CheckIns {
     parSequenceWithSleepingIntro
     runVersion2
     runVersion3
+    runVersion4
+    runVersion5
     quiz
   }
 }